@@ -1,10 +1,19 @@
 package org.linuxfirmware.consolePlus;
 
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.linuxfirmware.consolePlus.api.ConsolePlusService;
+import org.linuxfirmware.consolePlus.control.ControlServer;
+import org.linuxfirmware.consolePlus.managers.ProcessHost;
 
-public final class ConsolePlus extends JavaPlugin {
+import java.io.IOException;
+
+public final class ConsolePlus extends JavaPlugin implements ProcessHost {
 
     private ShellCommand shellCommand;
+    private ControlServer controlServer;
     private I18n i18n;
 
     @Override
@@ -15,15 +24,56 @@ public final class ConsolePlus extends JavaPlugin {
             this.shellCommand = new ShellCommand(this);
             getCommand("shell").setExecutor(shellCommand);
             getCommand("shell").setTabCompleter(shellCommand);
+            getServer().getServicesManager().register(ConsolePlusService.class, shellCommand.getProcessManager(), this, ServicePriority.Normal);
+            shellCommand.getProcessManager().reattachDetached(getConsoleSender());
+            if (getConfig().getBoolean("control-socket.enabled", false)) {
+                try {
+                    controlServer = new ControlServer(this, shellCommand.getProcessManager());
+                    controlServer.start();
+                } catch (IOException e) {
+                    getLogger().warning("Could not open control socket: " + e.getMessage());
+                    controlServer = null;
+                }
+            }
         }
     }
 
+    @Override
     public I18n getI18n() {
         return i18n;
     }
 
+    @Override
+    public ConsoleCommandSender getConsoleSender() {
+        return getServer().getConsoleSender();
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        getServer().getScheduler().runTaskAsynchronously(this, task);
+    }
+
+    @Override
+    public void runLater(Runnable task, long delayTicks) {
+        getServer().getScheduler().runTaskLater(this, task, delayTicks);
+    }
+
+    @Override
+    public BukkitTask runTimerAsync(Runnable task, long delayTicks, long periodTicks) {
+        return getServer().getScheduler().runTaskTimerAsynchronously(this, task, delayTicks, periodTicks);
+    }
+
+    @Override
+    public void dispatchCommand(String command) {
+        getServer().dispatchCommand(getConsoleSender(), command);
+    }
+
     @Override
     public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        if (controlServer != null) {
+            controlServer.stop();
+        }
         if (shellCommand != null) {
             shellCommand.cleanup();
         }
@@ -22,6 +22,14 @@ public class I18n {
         reload();
     }
 
+    /**
+     * 直接使用给定的语言文件，不依赖插件实例（用于压力测试等服务器之外的场景），不支持 {@link #reload()}。
+     */
+    public I18n(YamlConfiguration langConfig) {
+        this.plugin = null;
+        this.langConfig = langConfig;
+    }
+
     public void reload() {
         cache.clear();
         
@@ -7,11 +7,20 @@ import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.command.TabCompleter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+import org.linuxfirmware.consolePlus.jfr.CommandEvent;
+import org.linuxfirmware.consolePlus.managers.AliasManager;
 import org.linuxfirmware.consolePlus.managers.EnvironmentManager;
+import org.linuxfirmware.consolePlus.managers.JobManager;
 import org.linuxfirmware.consolePlus.managers.ProcessManager;
+import org.linuxfirmware.consolePlus.managers.StdinQueue;
+import org.linuxfirmware.consolePlus.utils.OutputFilter;
 import org.linuxfirmware.consolePlus.utils.ShellUtils;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -19,12 +28,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 public class ShellCommand implements CommandExecutor, TabCompleter {
+    private static final List<String> RUN_FLAGS = Arrays.asList("-d", "-e", "-t", "-P", "--stdin", "--cache", "--split", "--detach", "--triggers", "--grep", "--exclude", "--highlight");
+    private static final List<String> TAIL_FLAGS = Arrays.asList("-n", "-f", "--grep", "--exclude", "--highlight");
+    private static final List<String> RUN_ALL_FLAGS = Arrays.asList("--dirs", "-j", "-e", "-t", "-P", "--stdin", "--split", "--detach", "--triggers", "--grep", "--exclude", "--highlight");
+    private static final List<String> DO_FLAGS = Arrays.asList("-d", "-e", "-t", "-P");
+    private static final List<String> FILTER_KINDS = Arrays.asList("grep", "exclude", "highlight", "clear");
     private final ConsolePlus plugin;
     private final EnvironmentManager envManager;
     private final ProcessManager processManager;
+    private final JobManager jobManager;
+    private final AliasManager aliasManager;
     private final java.util.Set<String> systemCommands = new ConcurrentSkipListSet<>();
     private final boolean isWindows;
     private String selectedEnv = "default";
@@ -33,6 +50,8 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
         this.plugin = plugin;
         this.envManager = new EnvironmentManager(plugin);
         this.processManager = new ProcessManager(plugin, envManager);
+        this.jobManager = new JobManager(plugin, processManager, envManager);
+        this.aliasManager = new AliasManager(plugin);
         this.isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, this::refreshSystemCommands);
     }
@@ -85,37 +104,84 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
         return plugin.getI18n().get(key, map);
     }
 
+    /**
+     * 主线程上的命令处理与补全都记录为 JFR 事件，便于定位卡顿 tick。
+     */
+    private static void commitCommandEvent(CommandEvent event, String kind, String[] args) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.subcommand = (args.length > 0) ? args[0].toLowerCase() : "";
+            event.commit();
+        }
+    }
+
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        try {
+            return complete(sender, args);
+        } finally {
+            commitCommandEvent(event, "tab-complete", args);
+        }
+    }
+
+    private List<String> complete(CommandSender sender, String[] args) {
         if (!(sender instanceof ConsoleCommandSender)) {
             return Collections.emptyList();
         }
 
         if (args.length == 1) {
-            return filterStrings(Arrays.asList("run", "input", "list", "stop", "env", "help"), args[0]);
+            return filterStrings(Arrays.asList("run", "run-all", "do", "job", "tail", "input", "eof", "list", "stop", "filter", "history", "env", "cache", "help"), args[0]);
         }
 
         if (args.length >= 2) {
             String sub = args[0].toLowerCase();
             switch (sub) {
                 case "stop":
+                case "eof":
+                case "history":
+                    if (args.length == 2) {
+                        return processManager.getActiveIds().stream().map(String::valueOf).collect(Collectors.toList());
+                    }
+                    break;
                 case "input":
                     if (args.length == 2) {
                         return processManager.getActiveIds().stream().map(String::valueOf).collect(Collectors.toList());
                     }
+                    if (args.length == 4 && args[2].equals("-f")) return completePath(args[3], false, ".");
+                    break;
+                case "filter":
+                    if (args.length == 2) {
+                        return processManager.getActiveIds().stream().map(String::valueOf).collect(Collectors.toList());
+                    }
+                    if (args.length == 3) {
+                        return filterStrings(FILTER_KINDS, args[2]);
+                    }
                     break;
                 case "run":
+                case "run-all":
+                    List<String> flags = sub.equals("run") ? RUN_FLAGS : RUN_ALL_FLAGS;
                     int currentPos = args.length - 1;
                     if (args.length >= 3) {
                         String prev = args[currentPos - 1];
-                        if (prev.equals("-d")) return completePath(args[currentPos], true, ".");
+                        if (prev.equals("-d") || prev.equals("--dirs")) return completePath(args[currentPos], true, ".");
+                        if (prev.equals("--stdin")) return completePath(args[currentPos], false, ".");
                         if (prev.equals("-e")) return filterStrings(new ArrayList<>(envManager.getEnvironments().keySet()), args[currentPos]);
+                        if (prev.equals("-P")) return filterStrings(new ArrayList<>(processManager.getProfileNames()), args[currentPos]);
+                        if (prev.equals("--triggers")) {
+                            // 逗号分隔的多个组，只补全最后一个
+                            String input = args[currentPos];
+                            String head = input.substring(0, input.lastIndexOf(',') + 1);
+                            return filterStrings(processManager.getTriggerSetNames().stream().map(n -> head + n).collect(Collectors.toList()), input);
+                        }
                     }
 
                     int cmdPos = 1;
                     while (cmdPos < currentPos) {
-                        if (args[cmdPos].equals("-d") || args[cmdPos].equals("-e") || args[cmdPos].equals("-t")) {
-                            cmdPos += 2;
+                        if (flags.contains(args[cmdPos])) {
+                            cmdPos += (args[cmdPos].equals("--split") || args[cmdPos].equals("--detach")) ? 1 : 2;
                         } else {
                             break;
                         }
@@ -124,9 +190,9 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
                     if (currentPos <= cmdPos) {
                         String input = args[currentPos].toLowerCase();
                         List<String> results = new ArrayList<>();
-                        if (!Arrays.asList(args).contains("-d")) results.add("-d");
-                        if (!Arrays.asList(args).contains("-e")) results.add("-e");
-                        if (!Arrays.asList(args).contains("-t")) results.add("-t");
+                        for (String flag : flags) {
+                            if (!Arrays.asList(args).contains(flag)) results.add(flag);
+                        }
                         systemCommands.stream().filter(s -> s.toLowerCase().startsWith(input)).limit(50).forEach(results::add);
                         return filterStrings(results, input);
                     } else {
@@ -139,6 +205,34 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
                         }
                         return completePath(args[currentPos], false, workDirStr);
                     }
+                case "tail":
+                    String last = args[args.length - 1];
+                    String before = args[args.length - 2];
+                    if (before.equals("-n") || before.equals("--grep") || before.equals("--exclude") || before.equals("--highlight")) break;
+                    if (last.startsWith("-")) return filterStrings(TAIL_FLAGS, last);
+                    return completePath(last, false, ".");
+                case "cache":
+                    if (args.length == 2) return filterStrings(Collections.singletonList("clear"), args[1]);
+                    break;
+                case "do":
+                    int namePos = 1;
+                    while (namePos < args.length - 1 && DO_FLAGS.contains(args[namePos])) namePos += 2;
+                    String current = args[args.length - 1];
+                    if (namePos < args.length - 1) return aliasManager.complete(args[namePos], args.length - 2 - namePos, current);
+                    if (namePos > args.length - 1) {
+                        String flag = args[args.length - 2];
+                        if (flag.equals("-d")) return completePath(current, true, ".");
+                        if (flag.equals("-e")) return filterStrings(new ArrayList<>(envManager.getEnvironments().keySet()), current);
+                        if (flag.equals("-P")) return filterStrings(new ArrayList<>(processManager.getProfileNames()), current);
+                        break;
+                    }
+                    List<String> names = new ArrayList<>(aliasManager.getAliasNames());
+                    if (current.startsWith("-")) names.addAll(DO_FLAGS);
+                    return filterStrings(names, current);
+                case "job":
+                    if (args.length == 2) return filterStrings(Arrays.asList("run", "list"), args[1]);
+                    if (args.length == 3 && args[1].equalsIgnoreCase("run")) return filterStrings(new ArrayList<>(jobManager.getJobNames()), args[2]);
+                    break;
                 case "env":
                     if (args.length == 2) {
                         return filterStrings(Arrays.asList("create", "select", "delete", "edit", "list"), args[1]);
@@ -226,6 +320,16 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
 
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        try {
+            return execute(sender, args);
+        } finally {
+            commitCommandEvent(event, "command", args);
+        }
+    }
+
+    private boolean execute(CommandSender sender, String[] args) {
         if (!(sender instanceof ConsoleCommandSender)) {
             sender.sendMessage(msg("error-prefix") + msg("access-denied"));
             return true;
@@ -236,46 +340,199 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
         }
         String subCommand = args[0].toLowerCase();
         switch (subCommand) {
-            case "run": handleRun(sender, args); break;
+            case "run": handleRun(sender, args, false); break;
+            case "run-all": handleRun(sender, args, true); break;
+            case "do": handleDo(sender, args); break;
+            case "job": handleJob(sender, args); break;
+            case "tail": handleTail(sender, args); break;
             case "list": plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> processManager.listProcesses((ConsoleCommandSender)sender)); break;
             case "stop": handleStop(sender, args); break;
             case "input": handleInput(sender, args); break;
+            case "eof": handleEof(sender, args); break;
+            case "filter": handleFilter(sender, args); break;
+            case "history": handleHistory(sender, args); break;
             case "env": handleEnv(sender, args); break;
+            case "cache": handleCache(sender, args); break;
             case "help":
             default: sendHelp(sender); break;
         }
         return true;
     }
 
-    private void handleRun(CommandSender sender, String[] args) {
+    /**
+     * run 与 run-all 共用参数解析；run-all 需要 --dirs，并可用 -j 指定并行数。
+     */
+    private void handleRun(CommandSender sender, String[] args, boolean fanOut) {
+        String usageKey = fanOut ? "runall-usage" : "run-usage";
         if (args.length < 2) {
-            sender.sendMessage(msg("error-prefix") + msg("run-usage"));
+            sender.sendMessage(msg("error-prefix") + msg(usageKey));
             return;
         }
 
         // 使用单文件库解析命令行标志
-        org.linuxfirmware.consolePlus.vendor.SimpleArgParser parser = new org.linuxfirmware.consolePlus.vendor.SimpleArgParser();
+        org.linuxfirmware.consolePlus.vendor.SimpleArgParser parser = new org.linuxfirmware.consolePlus.vendor.SimpleArgParser().withSwitches("--split", "--detach");
         parser.parse(args, 1);
 
         String workDir = parser.getFlag("-d", null);
         String envName = parser.getFlag("-e", selectedEnv);
         Integer customTimeout = parser.getIntFlag("-t");
+        String stdinFile = parser.getFlag("--stdin", null);
+        String dirSpec = parser.getFlag("--dirs", null);
+        Integer cacheTtl = parser.getIntFlag("--cache");
+        String profile = parser.getFlag("-P", null);
+        String triggerSets = parser.getFlag("--triggers", null);
         int cmdIndex = parser.getRemainingIndex();
 
         if (cmdIndex >= args.length) {
             sender.sendMessage(msg("error-prefix") + msg("no-command-specified"));
             return;
         }
+        // run-all 不支持结果缓存
+        if (fanOut && (dirSpec == null || parser.getFlag("--cache", null) != null)) {
+            sender.sendMessage(msg("error-prefix") + msg(usageKey));
+            return;
+        }
+        if (!fanOut && parser.getFlag("--cache", null) != null && (cacheTtl == null || cacheTtl <= 0)) {
+            sender.sendMessage(msg("error-prefix") + msg("cache-invalid-ttl", "value", parser.getFlag("--cache", null)));
+            return;
+        }
 
         if (envName != null && !envManager.exists(envName)) {
             sender.sendMessage(msg("warn-prefix") + msg("env-fallback", "name", envName));
             envName = "default";
         }
         if (envName == null) envName = "default";
+        if (profile != null && !profile.equalsIgnoreCase("none") && !processManager.getProfileNames().contains(profile)) {
+            sender.sendMessage(msg("error-prefix") + msg("profile-not-found", "name", profile));
+            return;
+        }
         
+        OutputFilter filter;
+        try {
+            filter = OutputFilter.compile(parser.getFlag("--grep", null), parser.getFlag("--exclude", null), parser.getFlag("--highlight", null));
+        } catch (PatternSyntaxException e) {
+            sender.sendMessage(msg("error-prefix") + msg("invalid-pattern", "error", e.getDescription()));
+            return;
+        }
+
         // 构建最终执行的命令字符串
         String commandString = ShellUtils.buildCommand(args, cmdIndex);
-        processManager.executeAsync(commandString, (ConsoleCommandSender) sender, workDir, envName, customTimeout);
+        RunOptions options = new RunOptions(commandString).workDir(workDir).env(envName).timeout(customTimeout).profile(profile)
+            .grep(parser.getFlag("--grep", null)).exclude(parser.getFlag("--exclude", null)).highlight(parser.getFlag("--highlight", null));
+        if (parser.hasSwitch("--split")) options.separateStderr(true);
+        if (parser.hasSwitch("--detach")) options.detach(true);
+        if (triggerSets != null) options.triggers(triggerSets.equalsIgnoreCase("none") ? Collections.emptyList() : Arrays.asList(triggerSets.split(",")));
+        if (stdinFile != null) options.stdin(Paths.get(stdinFile));
+        if (!fanOut && cacheTtl != null) {
+            processManager.runCached(options, cacheTtl, (ConsoleCommandSender) sender)
+                .thenAccept(result -> processManager.replayCached(result, filter, (ConsoleCommandSender) sender));
+            return;
+        }
+        if (!fanOut) {
+            processManager.executeAsync(options, (ConsoleCommandSender) sender);
+            return;
+        }
+
+        Integer jobs = parser.getIntFlag("-j");
+        int parallelism = (jobs != null && jobs > 0) ? jobs : plugin.getConfig().getInt("run-all-parallelism", 4);
+        processManager.runAll(dirSpec, options, parallelism, (ConsoleCommandSender) sender);
+    }
+
+    /**
+     * 以别名执行：别名前的 -d、-e、-t、-P 标志覆盖别名中的默认设置。不带参数时列出所有别名。
+     */
+    private void handleDo(CommandSender sender, String[] args) {
+        org.linuxfirmware.consolePlus.vendor.SimpleArgParser parser = new org.linuxfirmware.consolePlus.vendor.SimpleArgParser();
+        parser.parse(args, 1);
+        int nameIndex = parser.getRemainingIndex();
+        if (nameIndex >= args.length) {
+            if (aliasManager.getAliasNames().isEmpty()) {
+                sender.sendMessage(msg("warn-prefix") + msg("alias-none"));
+                return;
+            }
+            sender.sendMessage(msg("prefix") + msg("alias-list-header"));
+            for (String name : aliasManager.getAliasNames()) {
+                sender.sendMessage("§f- " + aliasManager.usage(name));
+            }
+            return;
+        }
+
+        RunOptions options;
+        try {
+            options = aliasManager.resolve(args[nameIndex], args, nameIndex + 1, selectedEnv);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(msg("error-prefix") + e.getMessage());
+            return;
+        }
+        if (parser.getFlag("-d", null) != null) options.workDir(parser.getFlag("-d", null));
+        if (parser.getFlag("-e", null) != null) options.env(parser.getFlag("-e", null));
+        if (parser.getIntFlag("-t") != null) options.timeout(parser.getIntFlag("-t"));
+        if (parser.getFlag("-P", null) != null) options.profile(parser.getFlag("-P", null));
+        if (!envManager.exists(options.getEnvName())) {
+            sender.sendMessage(msg("warn-prefix") + msg("env-fallback", "name", options.getEnvName()));
+            options.env("default");
+        }
+        processManager.executeAsync(options, (ConsoleCommandSender) sender);
+    }
+
+    private void handleJob(CommandSender sender, String[] args) {
+        String action = (args.length >= 2) ? args[1].toLowerCase() : "";
+        if (action.equals("list")) {
+            if (jobManager.getJobNames().isEmpty()) {
+                sender.sendMessage(msg("prefix") + msg("job-none"));
+                return;
+            }
+            sender.sendMessage(msg("prefix") + msg("job-list-header"));
+            for (String name : jobManager.getJobNames()) {
+                sender.sendMessage((jobManager.isRunning(name) ? "§a* " : "§f- ") + name);
+            }
+        } else if (action.equals("run") && args.length >= 3) {
+            String error = jobManager.run(args[2], (ConsoleCommandSender) sender);
+            if (error != null) sender.sendMessage(msg("error-prefix") + error);
+        } else {
+            sender.sendMessage(msg("error-prefix") + msg("job-usage"));
+        }
+    }
+
+    private void handleCache(CommandSender sender, String[] args) {
+        if (args.length >= 2 && args[1].equalsIgnoreCase("clear")) {
+            processManager.clearCache();
+            sender.sendMessage(msg("prefix") + msg("cache-cleared"));
+            return;
+        }
+        long[] stats = processManager.getCacheStats();
+        long lookups = stats[1] + stats[2] + stats[3];
+        Map<String, Object> map = new HashMap<>();
+        map.put("entries", stats[0]);
+        map.put("hits", stats[1]);
+        map.put("shared", stats[2]);
+        map.put("misses", stats[3]);
+        map.put("evictions", stats[4]);
+        // 共享执行同样省掉了一次进程启动，计入命中率
+        map.put("rate", (lookups == 0) ? "0.0" : String.format("%.1f", (stats[1] + stats[2]) * 100.0 / lookups));
+        sender.sendMessage(msg("prefix") + plugin.getI18n().get("cache-stats", map));
+    }
+
+    private void handleTail(CommandSender sender, String[] args) {
+        org.linuxfirmware.consolePlus.vendor.SimpleArgParser parser = new org.linuxfirmware.consolePlus.vendor.SimpleArgParser().withSwitches("-f");
+        parser.parse(args, 1);
+        int fileIndex = parser.getRemainingIndex();
+        if (fileIndex >= args.length) {
+            sender.sendMessage(msg("error-prefix") + msg("tail-usage"));
+            return;
+        }
+        // 文件名之后仍可跟标志
+        parser.parse(args, fileIndex + 1);
+        Integer lines = parser.getIntFlag("-n");
+
+        OutputFilter filter;
+        try {
+            filter = OutputFilter.compile(parser.getFlag("--grep", null), parser.getFlag("--exclude", null), parser.getFlag("--highlight", null));
+        } catch (PatternSyntaxException e) {
+            sender.sendMessage(msg("error-prefix") + msg("invalid-pattern", "error", e.getDescription()));
+            return;
+        }
+        processManager.tail(new File(args[fileIndex]), (lines != null && lines >= 0) ? lines : 10, parser.hasSwitch("-f"), filter, (ConsoleCommandSender) sender);
     }
 
     private void handleStop(CommandSender sender, String[] args) {
@@ -286,7 +543,7 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
         try {
             int id = Integer.parseInt(args[1]);
             if (processManager.stopProcess(id)) {
-                sender.sendMessage(msg("warn-prefix") + msg("process-stopped", "id", id));
+                sender.sendMessage(msg("warn-prefix") + msg("process-stopping", "id", id));
             } else {
                 sender.sendMessage(msg("error-prefix") + msg("invalid-id"));
             }
@@ -300,13 +557,112 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
         }
         try {
             int id = Integer.parseInt(args[1]);
-            String input = String.join(" ", java.util.Arrays.copyOfRange(args, 2, args.length));
+            StdinQueue.Result result;
+            if (args[2].equals("-f")) {
+                if (args.length < 4) {
+                    sender.sendMessage(msg("error-prefix") + msg("input-usage"));
+                    return;
+                }
+                Path file = Paths.get(String.join(" ", java.util.Arrays.copyOfRange(args, 3, args.length)));
+                if (!Files.isRegularFile(file)) {
+                    sender.sendMessage(msg("error-prefix") + msg("file-not-found", "file", file));
+                    return;
+                }
+                result = processManager.sendInputFile(id, file);
+            } else {
+                result = processManager.sendInput(id, String.join(" ", java.util.Arrays.copyOfRange(args, 2, args.length)));
+            }
+            sendInputResult(sender, id, result, "input-queued");
+        } catch (NumberFormatException e) { sender.sendMessage(msg("error-prefix") + msg("invalid-id")); }
+    }
+
+    private void handleEof(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(msg("error-prefix") + msg("eof-usage"));
+            return;
+        }
+        try {
+            int id = Integer.parseInt(args[1]);
+            sendInputResult(sender, id, processManager.closeInput(id), "input-eof");
+        } catch (NumberFormatException e) { sender.sendMessage(msg("error-prefix") + msg("invalid-id")); }
+    }
+
+    private void sendInputResult(CommandSender sender, int id, StdinQueue.Result result, String successKey) {
+        if (result == null) {
+            sender.sendMessage(msg("error-prefix") + msg("invalid-id"));
+        } else if (result == StdinQueue.Result.QUEUED) {
+            sender.sendMessage(msg("prefix") + msg(successKey, "id", id));
+        } else if (result == StdinQueue.Result.QUEUE_FULL) {
+            sender.sendMessage(msg("warn-prefix") + msg("input-queue-full", "id", id));
+        } else {
+            sender.sendMessage(msg("error-prefix") + msg("input-closed", "id", id));
+        }
+    }
+
+    private void handleFilter(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(msg("error-prefix") + msg("filter-usage"));
+            return;
+        }
+        try {
+            int id = Integer.parseInt(args[1]);
+            if (!processManager.getActiveIds().contains(id)) {
+                sender.sendMessage(msg("error-prefix") + msg("invalid-id"));
+                return;
+            }
+            if (args.length == 2) {
+                OutputFilter filter = processManager.getFilter(id);
+                if (filter == null) {
+                    sender.sendMessage(msg("prefix") + msg("filter-none", "id", id));
+                } else {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("id", id);
+                    map.put("grep", filter.getGrep() != null ? filter.getGrep() : "-");
+                    map.put("exclude", filter.getExclude() != null ? filter.getExclude() : "-");
+                    map.put("highlight", filter.getHighlight() != null ? filter.getHighlight() : "-");
+                    sender.sendMessage(msg("prefix") + plugin.getI18n().get("filter-show", map));
+                }
+                return;
+            }
+            String kind = args[2].toLowerCase();
+            if (kind.equals("clear")) {
+                processManager.clearFilter(id);
+                sender.sendMessage(msg("prefix") + msg("filter-cleared", "id", id));
+                return;
+            }
+            if (!FILTER_KINDS.contains(kind)) {
+                sender.sendMessage(msg("error-prefix") + msg("filter-usage"));
+                return;
+            }
+            String pattern = (args.length > 3) ? String.join(" ", Arrays.copyOfRange(args, 3, args.length)) : null;
             try {
-                processManager.sendInput(id, input);
-                sender.sendMessage(msg("prefix") + msg("input-sent", "id", id));
-            } catch (Exception e) {
-                sender.sendMessage(msg("error-prefix") + e.getMessage());
+                processManager.setFilter(id, kind, pattern);
+                sender.sendMessage(msg("prefix") + msg("filter-updated", "id", id));
+            } catch (PatternSyntaxException e) {
+                sender.sendMessage(msg("error-prefix") + msg("invalid-pattern", "error", e.getDescription()));
+            }
+        } catch (NumberFormatException e) { sender.sendMessage(msg("error-prefix") + msg("invalid-id")); }
+    }
+
+    private void handleHistory(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(msg("error-prefix") + msg("history-usage"));
+            return;
+        }
+        try {
+            int id = Integer.parseInt(args[1]);
+            int count = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+            if (count <= 0) {
+                sender.sendMessage(msg("error-prefix") + msg("history-usage"));
+                return;
             }
+            List<String> lines = processManager.getScrollback(id, count);
+            if (lines == null) {
+                sender.sendMessage(msg("error-prefix") + msg("invalid-id"));
+                return;
+            }
+            sender.sendMessage(msg("prefix") + msg("history-header", "id", id, "count", lines.size()));
+            for (String line : lines) sender.sendMessage("§7" + line);
         } catch (NumberFormatException e) { sender.sendMessage(msg("error-prefix") + msg("invalid-id")); }
     }
 
@@ -386,10 +742,22 @@ public class ShellCommand implements CommandExecutor, TabCompleter {
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(msg("prefix") + msg("help-header"));
         sender.sendMessage("§f" + msg("help-run"));
+        sender.sendMessage("§f" + msg("help-run-all"));
+        sender.sendMessage("§f" + msg("help-do"));
+        sender.sendMessage("§f" + msg("help-job"));
+        sender.sendMessage("§f" + msg("help-tail"));
         sender.sendMessage("§f" + msg("help-input"));
+        sender.sendMessage("§f" + msg("help-eof"));
         sender.sendMessage("§f" + msg("help-list"));
         sender.sendMessage("§f" + msg("help-stop"));
+        sender.sendMessage("§f" + msg("help-filter"));
+        sender.sendMessage("§f" + msg("help-history"));
         sender.sendMessage("§f" + msg("help-env"));
+        sender.sendMessage("§f" + msg("help-cache"));
+    }
+
+    public ProcessManager getProcessManager() {
+        return processManager;
     }
 
     public void cleanup() {
@@ -0,0 +1,66 @@
+package org.linuxfirmware.consolePlus.api;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 带完整输出的执行结果，由 {@link ConsolePlusService#startCached} 返回。
+ * 多个调用方可能共享同一实例的输出列表，该列表不可修改。
+ */
+public final class CachedResult {
+    public enum Source {
+        /** 本次调用实际启动了进程 */
+        EXECUTED,
+        /** 加入了一个正在进行的相同执行 */
+        SHARED,
+        /** 直接取自缓存 */
+        CACHED
+    }
+
+    private final int exitCode;
+    private final List<String> lines;
+    private final long completedAt;
+    private final boolean complete;
+    private final Source source;
+
+    public CachedResult(int exitCode, List<String> lines, long completedAt, boolean complete, Source source) {
+        this.exitCode = exitCode;
+        this.lines = Collections.unmodifiableList(lines);
+        this.completedAt = completedAt;
+        this.complete = complete;
+        this.source = source;
+    }
+
+    public CachedResult withSource(Source source) {
+        return (source == this.source) ? this : new CachedResult(exitCode, lines, completedAt, complete, source);
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * 输出行（已剥离 ANSI 转义序列）。
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * 进程结束的时间（毫秒时间戳），缓存命中时可据此计算结果的新旧。
+     */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * 进程自行退出且输出未超过捕获上限时为 true；否则结果不会进入缓存。
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,39 @@
+package org.linuxfirmware.consolePlus.api;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ConsolePlus 对其他插件公开的服务接口，通过 Bukkit ServicesManager 获取：
+ * <pre>
+ * ConsolePlusService service = Bukkit.getServicesManager().load(ConsolePlusService.class);
+ * </pre>
+ * 命令与 /shell run 使用同一条执行管线（环境、日志、过滤、超时），但不经过控制台。
+ */
+public interface ConsolePlusService {
+
+    /**
+     * 异步启动命令并立即返回任务句柄。
+     * 需要完整输出的调用方应通过 {@link RunOptions#onLines} / {@link RunOptions#onChunks}
+     * 在启动前订阅，之后通过 {@link ShellJob#lines()} 订阅只能收到订阅时刻之后的输出。
+     *
+     * @throws IllegalArgumentException 工作目录或环境不存在
+     */
+    ShellJob start(RunOptions options);
+
+    /**
+     * 与 {@link #start} 相同，但结果在 ttlSeconds 秒内被缓存：相同的命令、环境与工作目录直接返回缓存的输出，
+     * 执行中的相同请求共享同一个进程。适用于 df、free、git status 等无副作用的状态命令。
+     * 输出超过 result-cache.max-output-lines 或进程被停止时结果不会进入缓存。
+     *
+     * @throws IllegalArgumentException 工作目录或环境不存在
+     */
+    CompletableFuture<CachedResult> startCached(RunOptions options, int ttlSeconds);
+
+    /**
+     * 返回运行中的任务，不存在时返回 null。
+     */
+    ShellJob getJob(int id);
+
+    Set<Integer> getActiveIds();
+}
@@ -0,0 +1,230 @@
+package org.linuxfirmware.consolePlus.api;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+/**
+ * 一次命令执行的全部参数。
+ */
+public class RunOptions {
+    private final String command;
+    private String workDir;
+    private String envName = "default";
+    private final Map<String, String> variables = new LinkedHashMap<>();
+    private Integer timeout;
+    private Path stdinFile;
+    private String label;
+    private Boolean separateStderr;
+    private String profile;
+    private boolean detach = false;
+    private List<String> triggers;
+    private String grep;
+    private String exclude;
+    private String highlight;
+    private boolean consoleOutput = true;
+    private Flow.Subscriber<? super String> lineSubscriber;
+    private Flow.Subscriber<? super ByteBuffer> chunkSubscriber;
+
+    public RunOptions(String command) {
+        this.command = command;
+    }
+
+    public RunOptions workDir(String workDir) {
+        this.workDir = workDir;
+        return this;
+    }
+
+    /**
+     * 使用 /shell env 中定义的环境，默认为 "default"。
+     */
+    public RunOptions env(String envName) {
+        this.envName = envName;
+        return this;
+    }
+
+    /**
+     * 额外注入的环境变量，在所选环境之后生效。
+     */
+    public RunOptions variable(String key, String value) {
+        this.variables.put(key, value);
+        return this;
+    }
+
+    /**
+     * 超时秒数，null 表示使用配置中的 default-timeout，0 表示不限时。
+     */
+    public RunOptions timeout(Integer timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * 将进程的标准输入直接重定向到文件，此时无法再通过 writeInput 发送输入。
+     */
+    public RunOptions stdin(Path stdinFile) {
+        this.stdinFile = stdinFile;
+        return this;
+    }
+
+    /**
+     * 分别读取 stdout 与 stderr（各自的前缀颜色、路由与字节计数），默认取配置 stderr.separate。
+     */
+    public RunOptions separateStderr(Boolean separate) {
+        this.separateStderr = separate;
+        return this;
+    }
+
+    /**
+     * 使用 launch-profiles 中定义的启动配置（nice、ionice、CPU 亲和性），
+     * null 表示取环境对应的配置或默认配置，"none" 表示不使用。
+     */
+    public RunOptions profile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * 脱离插件运行：输出写入 spool 文件，插件重载或服务器重启后重新接管。仅支持带 setsid 的系统，
+     * 此时 stdout 与 stderr 总是合并。
+     */
+    public RunOptions detach(boolean detach) {
+        this.detach = detach;
+        return this;
+    }
+
+    /**
+     * 使用配置 triggers.sets 中的触发器组，null 表示取环境对应的组，空列表表示不使用触发器。
+     */
+    public RunOptions triggers(List<String> sets) {
+        this.triggers = sets;
+        return this;
+    }
+
+    /**
+     * 附加在输出前缀中的标签，例如 [3:lobby]，用于区分同时运行的多个目标。
+     */
+    public RunOptions label(String label) {
+        this.label = label;
+        return this;
+    }
+
+    /**
+     * 只显示匹配的行，规则与 /shell run --grep 相同：含正则元字符时按正则匹配，否则按 '|' 分隔的字面量匹配。
+     */
+    public RunOptions grep(String pattern) {
+        this.grep = pattern;
+        return this;
+    }
+
+    /**
+     * 隐藏匹配的行，规则同 {@link #grep}。
+     */
+    public RunOptions exclude(String pattern) {
+        this.exclude = pattern;
+        return this;
+    }
+
+    /**
+     * 高亮匹配的文本，规则同 {@link #grep}。
+     */
+    public RunOptions highlight(String pattern) {
+        this.highlight = pattern;
+        return this;
+    }
+
+    /**
+     * 是否将输出与状态消息发送到服务器控制台。
+     */
+    public RunOptions consoleOutput(boolean consoleOutput) {
+        this.consoleOutput = consoleOutput;
+        return this;
+    }
+
+    /**
+     * 在进程启动前订阅逐行输出，保证不丢失任何一行。
+     */
+    public RunOptions onLines(Flow.Subscriber<? super String> subscriber) {
+        this.lineSubscriber = subscriber;
+        return this;
+    }
+
+    /**
+     * 在进程启动前订阅原始输出字节块。
+     */
+    public RunOptions onChunks(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        this.chunkSubscriber = subscriber;
+        return this;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getWorkDir() {
+        return workDir;
+    }
+
+    public String getEnvName() {
+        return envName;
+    }
+
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public Path getStdinFile() {
+        return stdinFile;
+    }
+
+    public Boolean getSeparateStderr() {
+        return separateStderr;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public boolean isDetach() {
+        return detach;
+    }
+
+    public List<String> getTriggers() {
+        return triggers;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getGrep() {
+        return grep;
+    }
+
+    public String getExclude() {
+        return exclude;
+    }
+
+    public String getHighlight() {
+        return highlight;
+    }
+
+    public boolean isConsoleOutput() {
+        return consoleOutput;
+    }
+
+    public Flow.Subscriber<? super String> getLineSubscriber() {
+        return lineSubscriber;
+    }
+
+    public Flow.Subscriber<? super ByteBuffer> getChunkSubscriber() {
+        return chunkSubscriber;
+    }
+}
@@ -0,0 +1,64 @@
+package org.linuxfirmware.consolePlus.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * 一个由 ConsolePlus 管理的进程。
+ */
+public interface ShellJob {
+
+    int getId();
+
+    String getCommand();
+
+    /**
+     * 启动时间（毫秒时间戳）。
+     */
+    long getStartTime();
+
+    /**
+     * 进程结束（正常退出、被停止或启动失败）时完成。
+     */
+    CompletableFuture<ShellResult> onExit();
+
+    /**
+     * 逐行输出（已剥离 ANSI 转义序列）。订阅者的缓冲区已满时输出线程会等待，
+     * 从而把背压传递到子进程的管道上。文件跟踪（/shell tail）与重新接管的脱离任务共用一个读取线程，
+     * 不施加背压：缓冲区已满的订阅者会丢失数据。
+     */
+    Flow.Publisher<String> lines();
+
+    /**
+     * 原始输出字节块（只读缓冲区），背压语义同 {@link #lines()}。
+     */
+    Flow.Publisher<ByteBuffer> chunks();
+
+    /**
+     * 将一行排入进程的标准输入队列，不会阻塞。
+     *
+     * @throws IOException 队列已满或标准输入已关闭
+     */
+    void writeInput(String line) throws IOException;
+
+    /**
+     * 将整个文件排入进程的标准输入队列，由写线程分块传输。
+     *
+     * @throws IOException 队列已满或标准输入已关闭
+     */
+    void writeInput(Path file) throws IOException;
+
+    /**
+     * 在已排队的输入写完后关闭标准输入（发送 EOF）。
+     */
+    void closeInput() throws IOException;
+
+    /**
+     * 停止进程及其子进程：先发送 SIGTERM，宽限期后强制终止仍存活的进程。
+     * 不等待进程退出，可通过 {@link #onExit()} 等待；进程已不存在时返回 false。
+     */
+    boolean stop();
+}
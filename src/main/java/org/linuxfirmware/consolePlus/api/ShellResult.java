@@ -0,0 +1,57 @@
+package org.linuxfirmware.consolePlus.api;
+
+/**
+ * 进程结束后的结果。
+ */
+public final class ShellResult {
+    private final int id;
+    private final int exitCode;
+    private final long durationMillis;
+    private final long outputBytes;
+    private final long errorBytes;
+
+    public ShellResult(int id, int exitCode, long durationMillis, long outputBytes) {
+        this(id, exitCode, durationMillis, outputBytes, 0);
+    }
+
+    public ShellResult(int id, int exitCode, long durationMillis, long outputBytes, long errorBytes) {
+        this.id = id;
+        this.exitCode = exitCode;
+        this.durationMillis = durationMillis;
+        this.outputBytes = outputBytes;
+        this.errorBytes = errorBytes;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 进程退出码；进程未能启动时为 -1。
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * 输出的总字节数，包括 stderr。
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    /**
+     * stderr 单独读取时其字节数（已计入 {@link #getOutputBytes()}）；与 stdout 合并读取时为 0。
+     */
+    public long getErrorBytes() {
+        return errorBytes;
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+}
@@ -0,0 +1,100 @@
+package org.linuxfirmware.consolePlus.control;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * 控制通道的命令行客户端，不依赖服务器环境：
+ * <pre>
+ * java -cp ConsolePlus.jar org.linuxfirmware.consolePlus.control.ConsolePlusCtl &lt;socket&gt; list
+ * java -cp ConsolePlus.jar org.linuxfirmware.consolePlus.control.ConsolePlusCtl &lt;socket&gt; attach &lt;id&gt; [lines]
+ * java -cp ConsolePlus.jar org.linuxfirmware.consolePlus.control.ConsolePlusCtl &lt;socket&gt; input &lt;id&gt; &lt;text&gt;
+ * java -cp ConsolePlus.jar org.linuxfirmware.consolePlus.control.ConsolePlusCtl &lt;socket&gt; eof &lt;id&gt;
+ * java -cp ConsolePlus.jar org.linuxfirmware.consolePlus.control.ConsolePlusCtl &lt;socket&gt; stop &lt;id&gt;
+ * </pre>
+ * attach 模式下，本地标准输入的每一行都会作为该进程的输入发送，本地输入结束时关闭进程的标准输入。
+ */
+public class ConsolePlusCtl {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ConsolePlusCtl <socket> <list|attach <id> [lines]|input <id> <text>|eof <id>|stop <id>>");
+            System.exit(2);
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(Path.of(args[0])));
+            String request = String.join(" ", java.util.Arrays.copyOfRange(args, 1, args.length));
+            send(channel, request);
+
+            boolean attach = args[1].equals("attach");
+            if (attach) {
+                String id = args[2];
+                Thread stdin = new Thread(() -> {
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) send(channel, "input " + id + " " + line);
+                        send(channel, "eof " + id);
+                    } catch (IOException ignored) {}
+                }, "ConsolePlusCtl-stdin");
+                stdin.setDaemon(true);
+                stdin.start();
+            }
+            System.exit(receive(channel, args[1]));
+        }
+    }
+
+    private static void send(SocketChannel channel, String line) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    /**
+     * 读取服务器响应直到当前请求结束，返回进程退出码。
+     */
+    private static int receive(SocketChannel channel, String request) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(65536);
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        while (channel.read(buf) >= 0) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                byte b = buf.get();
+                if (b != '\n') {
+                    pending.write(b);
+                    continue;
+                }
+                // 按字节切分行后再解码，避免多字节字符被读缓冲区截断
+                String line = pending.toString(StandardCharsets.UTF_8);
+                pending.reset();
+                if (line.startsWith("OUT ")) {
+                    System.out.println(line.substring(line.indexOf(' ', 4) + 1));
+                } else if (line.startsWith("EXIT ")) {
+                    String code = line.substring(line.lastIndexOf(' ') + 1);
+                    System.err.println("[exited with code " + code + "]");
+                    return Integer.parseInt(code);
+                } else if (line.startsWith("ERR ")) {
+                    System.err.println(line.substring(4));
+                    // attach 期间的输入错误（如队列已满）不结束会话
+                    if (!request.equals("attach") || !line.startsWith("ERR stdin")) return 1;
+                } else if (line.startsWith("DROPPED ")) {
+                    System.err.println("[" + line.substring(8) + " lines dropped]");
+                } else if (line.equals("END")) {
+                    return 0;
+                } else if (line.startsWith("JOB ")) {
+                    System.out.println(line.substring(4));
+                } else if (line.equals("OK") && !request.equals("attach")) {
+                    return 0;
+                }
+            }
+            buf.clear();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,327 @@
+package org.linuxfirmware.consolePlus.control;
+
+import org.linuxfirmware.consolePlus.ConsolePlus;
+import org.linuxfirmware.consolePlus.api.ShellJob;
+import org.linuxfirmware.consolePlus.managers.ProcessManager;
+import org.linuxfirmware.consolePlus.managers.StdinQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+
+/**
+ * 本地 Unix 域套接字控制通道。所有客户端由一个 NIO selector 线程复用；
+ * 进程输出通过 {@link ShellJob#lines()} 订阅后写入每个客户端的有界缓冲区，
+ * 缓冲区满时丢弃并记录丢弃行数，因此慢客户端不会阻塞输出线程。
+ *
+ * 协议为 UTF-8 文本行：
+ * <pre>
+ * list                  -> JOB &lt;id&gt; &lt;seconds&gt; &lt;command&gt; ... END
+ * attach &lt;id&gt; [lines]   -> OK，随后推送 OUT &lt;id&gt; &lt;text&gt; 与 EXIT &lt;id&gt; &lt;code&gt;
+ * detach &lt;id&gt;
+ * input &lt;id&gt; &lt;text&gt;  -> OK 或 ERR stdin queue full
+ * eof &lt;id&gt;
+ * stop &lt;id&gt;
+ * </pre>
+ */
+public class ControlServer implements Runnable {
+    private static final int MAX_REQUEST_LINE = 8192;
+
+    private final ConsolePlus plugin;
+    private final ProcessManager processManager;
+    private final Path socketPath;
+    private final int clientBufferLimit;
+    private final ConcurrentLinkedQueue<Client> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public ControlServer(ConsolePlus plugin, ProcessManager processManager) {
+        this.plugin = plugin;
+        this.processManager = processManager;
+        File dir = new File(plugin.getDataFolder(), "control");
+        this.socketPath = new File(dir, plugin.getConfig().getString("control-socket.name", "control.sock")).toPath();
+        this.clientBufferLimit = plugin.getConfig().getInt("control-socket.client-buffer", 262144);
+    }
+
+    public void start() throws IOException {
+        Path dir = socketPath.getParent();
+        Files.createDirectories(dir);
+        // 套接字所在目录仅允许服务器用户访问，避免绑定与设置权限之间的竞态
+        try {
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwx------"));
+        } catch (UnsupportedOperationException ignored) {}
+        Files.deleteIfExists(socketPath);
+
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        try {
+            Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {}
+        server.configureBlocking(false);
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        thread = new Thread(this, "ConsolePlus-control");
+        thread.setDaemon(true);
+        thread.start();
+        plugin.getLogger().info("Control socket listening on " + socketPath);
+    }
+
+    public void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Client c;
+                while ((c = pendingWrites.poll()) != null) {
+                    if (c.key.isValid()) c.key.interestOps(c.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) accept();
+                        else {
+                            Client client = (Client) key.attachment();
+                            if (key.isReadable()) client.read();
+                            if (key.isValid() && key.isWritable()) client.write();
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Client) ((Client) key.attachment()).close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Control socket stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Client) ((Client) key.attachment()).close();
+            }
+            try { server.close(); } catch (IOException ignored) {}
+            try { selector.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+    }
+
+    private class Client {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_REQUEST_LINE);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private final Map<Integer, Flow.Subscription> attachments = new ConcurrentHashMap<>();
+        private int pendingBytes = 0;
+        private long dropped = 0;
+        private boolean closed = false;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            int start = in.position();
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    String line = new String(in.array(), start, i - start, StandardCharsets.UTF_8).trim();
+                    start = i + 1;
+                    if (!line.isEmpty()) handle(line);
+                }
+            }
+            in.position(start);
+            in.compact();
+            if (!in.hasRemaining()) {
+                send("ERR request too long");
+                in.clear();
+            }
+        }
+
+        void write() throws IOException {
+            synchronized (this) {
+                if (dropped > 0) {
+                    // 被丢弃的内容晚于已排队的内容，因此通知追加在队尾
+                    ByteBuffer notice = ByteBuffer.wrap(("DROPPED " + dropped + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.add(notice);
+                    pendingBytes += notice.remaining();
+                    dropped = 0;
+                }
+                while (!out.isEmpty()) {
+                    ByteBuffer buf = out.peek();
+                    int written = channel.write(buf);
+                    pendingBytes -= written;
+                    if (buf.hasRemaining()) return;
+                    out.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * 可在任意线程调用，从不阻塞；超出缓冲上限的内容被丢弃。
+         */
+        void send(String text) {
+            byte[] data = (text + "\n").getBytes(StandardCharsets.UTF_8);
+            boolean wasEmpty;
+            synchronized (this) {
+                if (closed) return;
+                if (pendingBytes + data.length > clientBufferLimit) {
+                    dropped++;
+                    return;
+                }
+                wasEmpty = out.isEmpty();
+                out.add(ByteBuffer.wrap(data));
+                pendingBytes += data.length;
+            }
+            if (wasEmpty) {
+                pendingWrites.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                out.clear();
+            }
+            attachments.values().forEach(Flow.Subscription::cancel);
+            attachments.clear();
+            if (key != null) key.cancel();
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+
+        private void handle(String line) {
+            String[] parts = line.split(" ", 3);
+            String cmd = parts[0].toLowerCase();
+            try {
+                switch (cmd) {
+                    case "list":
+                        long now = System.currentTimeMillis();
+                        for (Integer id : processManager.getActiveIds()) {
+                            ShellJob job = processManager.getJob(id);
+                            if (job != null) send("JOB " + id + " " + (now - job.getStartTime()) / 1000 + " " + job.getCommand());
+                        }
+                        send("END");
+                        break;
+                    case "attach":
+                        attach(Integer.parseInt(parts[1]), (parts.length > 2) ? Integer.parseInt(parts[2].trim()) : 0);
+                        break;
+                    case "detach":
+                        Flow.Subscription sub = attachments.remove(Integer.parseInt(parts[1]));
+                        if (sub != null) sub.cancel();
+                        send("OK");
+                        break;
+                    case "input":
+                        // 输入只入队，不会阻塞 selector 线程
+                        sendInputResult(processManager.sendInput(Integer.parseInt(parts[1]), (parts.length > 2) ? parts[2] : ""));
+                        break;
+                    case "eof":
+                        sendInputResult(processManager.closeInput(Integer.parseInt(parts[1])));
+                        break;
+                    case "stop":
+                        int stopId = Integer.parseInt(parts[1]);
+                        plugin.getServer().getScheduler().runTaskAsynchronously(plugin,
+                            () -> send(processManager.stopProcess(stopId) ? "OK" : "ERR no such process"));
+                        break;
+                    default:
+                        send("ERR unknown command");
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                send("ERR bad arguments");
+            }
+        }
+
+        private void sendInputResult(StdinQueue.Result result) {
+            if (result == null) send("ERR no such process");
+            else if (result == StdinQueue.Result.QUEUED) send("OK");
+            else if (result == StdinQueue.Result.QUEUE_FULL) send("ERR stdin queue full");
+            else send("ERR stdin closed");
+        }
+
+        private void attach(int id, int historyLines) {
+            ShellJob job = processManager.getJob(id);
+            if (job == null) {
+                send("ERR no such process");
+                return;
+            }
+            if (attachments.containsKey(id)) {
+                send("OK");
+                return;
+            }
+            send("OK");
+            if (historyLines > 0) {
+                List<String> history = processManager.getScrollback(id, historyLines);
+                if (history != null) history.forEach(l -> send("OUT " + id + " " + l));
+            }
+            job.lines().subscribe(new Flow.Subscriber<String>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    attachments.put(id, subscription);
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(String item) {
+                    send("OUT " + id + " " + item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    attachments.remove(id);
+                }
+
+                @Override
+                public void onComplete() {
+                    // 所有输出投递完毕后再通知退出，保证 EXIT 位于最后
+                    job.onExit().thenAccept(result -> {
+                        if (attachments.remove(id) != null) send("EXIT " + id + " " + result.getExitCode());
+                    });
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * /shell 命令或其补全在主线程上的执行。
+ */
+@Name("consoleplus.Command")
+@Label("Shell Command")
+@Category({"ConsolePlus", "Main Thread"})
+public class CommandEvent extends Event {
+    @Label("Kind")
+    public String kind;
+
+    @Label("Subcommand")
+    public String subcommand;
+}
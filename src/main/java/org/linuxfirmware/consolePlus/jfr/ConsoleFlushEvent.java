@@ -0,0 +1,28 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 一批输出行发送到控制台，记录在 sendMessage 中花费的时间。
+ */
+@Name("consoleplus.ConsoleFlush")
+@Label("Console Flush")
+@Category({"ConsolePlus", "Output"})
+public class ConsoleFlushEvent extends Event {
+    @Label("Job ID")
+    public int id;
+
+    @Label("Lines Sent")
+    public int lines;
+
+    @Label("Lines Filtered")
+    public int filtered;
+
+    @Label("Send Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sendNanos;
+}
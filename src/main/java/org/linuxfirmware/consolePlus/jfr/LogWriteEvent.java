@@ -0,0 +1,20 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 将缓冲的进程日志刷新到磁盘。事件持续时间即 flush 的耗时。
+ */
+@Name("consoleplus.LogWrite")
+@Label("Process Log Write")
+@Category({"ConsolePlus", "Output"})
+public class LogWriteEvent extends Event {
+    @Label("Job ID")
+    public int id;
+
+    @Label("Characters")
+    public long chars;
+}
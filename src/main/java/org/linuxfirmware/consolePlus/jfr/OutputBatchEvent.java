@@ -0,0 +1,30 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 输出线程处理一次读取的数据（切分、解码、过滤、发送与写日志）。
+ */
+@Name("consoleplus.OutputBatch")
+@Label("Output Batch")
+@Category({"ConsolePlus", "Output"})
+public class OutputBatchEvent extends Event {
+    @Label("Job ID")
+    public int id;
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+
+    @Label("Lines")
+    public int lines;
+
+    @Label("Decode Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long decodeNanos;
+}
@@ -0,0 +1,39 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 任务结束（进程退出或文件跟踪停止）。
+ */
+@Name("consoleplus.ProcessExit")
+@Label("Process Exit")
+@Category({"ConsolePlus", "Process"})
+public class ProcessExitEvent extends Event {
+    @Label("Job ID")
+    public int id;
+
+    @Label("PID")
+    public long pid;
+
+    @Label("Command Hash")
+    public int commandHash;
+
+    @Label("Exit Code")
+    public int exitCode;
+
+    @Label("Run Time")
+    @Timespan(Timespan.MILLISECONDS)
+    public long runTime;
+
+    @Label("Output Bytes")
+    @DataAmount
+    public long outputBytes;
+
+    @Label("Output Lines")
+    public long outputLines;
+}
@@ -0,0 +1,33 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 启动子进程。事件持续时间即 ProcessBuilder.start() 的耗时。
+ * 命令行可能含有密码或令牌，事件只记录其哈希。
+ */
+@Name("consoleplus.ProcessSpawn")
+@Label("Process Spawn")
+@Category({"ConsolePlus", "Process"})
+@Description("A shell command was started")
+public class ProcessSpawnEvent extends Event {
+    @Label("Job ID")
+    public int id;
+
+    @Label("PID")
+    public long pid;
+
+    @Label("Command Hash")
+    @Description("Stable hash of the command string, for grouping repeated jobs")
+    public int commandHash;
+
+    @Label("Environment")
+    public String env;
+
+    @Label("Working Directory")
+    public String workDir;
+}
@@ -0,0 +1,28 @@
+package org.linuxfirmware.consolePlus.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 分阶段停止进程树，从发送 SIGTERM 开始，到进程树全部退出或被强制终止为止。
+ */
+@Name("consoleplus.ProcessStop")
+@Label("Process Stop")
+@Category({"ConsolePlus", "Process"})
+public class ProcessStopEvent extends Event {
+    @Label("Job ID")
+    public int id;
+
+    @Label("PID")
+    public long pid;
+
+    @Label("Reason")
+    public String reason;
+
+    @Label("Grace Period")
+    @Timespan(Timespan.MILLISECONDS)
+    public long grace;
+}
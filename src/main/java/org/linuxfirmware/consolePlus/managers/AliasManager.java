@@ -0,0 +1,266 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+import org.linuxfirmware.consolePlus.utils.CommandTemplate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 读取与 environments.yml 并列的 aliases.yml。每个别名在加载时即编译为 {@link CommandTemplate}，
+ * /shell do 只需校验参数并代入模板。文件在修改后的下一次访问时自动重新加载。
+ *
+ * <pre>
+ * backup:
+ *   run: "tar czf backups/{world}.tgz {world} && find backups -mtime +{days} -delete"
+ *   params: [world, "days:int=7"]   # 名称[:string|int|text|a|b|c][=默认值]，text 只能是最后一个参数，取剩余全部参数
+ *   dir: /srv/mc
+ *   env: default
+ *   timeout: 3600
+ *   profile: background
+ *   description: "Archive a world"
+ * uptime: "uptime"                  # 简写，参数按占位符出现的顺序推断
+ * </pre>
+ */
+public class AliasManager {
+    private static final Pattern PARAM = Pattern.compile("([A-Za-z0-9_-]+)(?::([^=]+))?(?:=(.*))?");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z0-9_-]+)}");
+
+    private final ProcessHost plugin;
+    private final File aliasFile;
+    private Map<String, Alias> aliases = Collections.emptyMap();
+    private long loadedModified = -1;
+
+    private static class Param {
+        final String name;
+        final String type;
+        final List<String> choices;
+        final String defaultValue;
+
+        Param(String name, String type, List<String> choices, String defaultValue) {
+            this.name = name;
+            this.type = type;
+            this.choices = choices;
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    private static class Alias {
+        final String name;
+        final List<Param> params = new ArrayList<>();
+        String description;
+        CommandTemplate template;
+        String workDir;
+        String env;
+        Integer timeout;
+        String profile;
+        // 定义有误时的错误信息（已本地化），此时 template 为 null
+        String error;
+
+        Alias(String name) {
+            this.name = name;
+        }
+    }
+
+    public AliasManager(ProcessHost plugin) {
+        this.plugin = plugin;
+        this.aliasFile = new File(plugin.getDataFolder(), "aliases.yml");
+    }
+
+    private synchronized Map<String, Alias> aliases() {
+        long modified = aliasFile.exists() ? aliasFile.lastModified() : 0;
+        if (modified != loadedModified) {
+            loadedModified = modified;
+            Map<String, Alias> map = new LinkedHashMap<>();
+            if (modified != 0) {
+                YamlConfiguration config = YamlConfiguration.loadConfiguration(aliasFile);
+                for (String key : config.getKeys(false)) {
+                    Alias alias = new Alias(key);
+                    try {
+                        load(alias, config);
+                    } catch (IllegalArgumentException e) {
+                        alias.error = e.getMessage();
+                        plugin.getLogger().warning("Invalid alias '" + key + "' in aliases.yml: " + e.getMessage());
+                    }
+                    map.put(key, alias);
+                }
+            }
+            aliases = map;
+        }
+        return aliases;
+    }
+
+    private void load(Alias alias, YamlConfiguration config) {
+        ConfigurationSection s = config.getConfigurationSection(alias.name);
+        String command = (s != null) ? s.getString("run") : config.getString(alias.name);
+        if (command == null || command.trim().isEmpty()) throw new IllegalArgumentException(msg("alias-no-command"));
+
+        List<String> specs = new ArrayList<>();
+        if (s != null && s.contains("params")) {
+            specs.addAll(s.getStringList("params"));
+        } else {
+            Matcher m = PLACEHOLDER.matcher(command);
+            while (m.find()) {
+                if (!specs.contains(m.group(1))) specs.add(m.group(1));
+            }
+        }
+        for (String spec : specs) {
+            alias.params.add(parseParam(spec, alias.params));
+        }
+        for (int i = 0; i < alias.params.size() - 1; i++) {
+            if (alias.params.get(i).type.equals("text")) throw new IllegalArgumentException(msg("alias-text-not-last", "param", alias.params.get(i).name));
+        }
+
+        List<String> names = new ArrayList<>();
+        alias.params.forEach(p -> names.add(p.name));
+        try {
+            alias.template = CommandTemplate.compile(command, names);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(msg("alias-unknown-placeholder", "param", e.getMessage()));
+        }
+        if (s != null) {
+            alias.description = s.getString("description");
+            alias.workDir = s.getString("dir");
+            alias.env = s.getString("env");
+            alias.timeout = s.contains("timeout") ? s.getInt("timeout") : null;
+            alias.profile = s.getString("profile");
+        }
+    }
+
+    private Param parseParam(String spec, List<Param> previous) {
+        Matcher m = PARAM.matcher(spec.trim());
+        if (!m.matches()) throw new IllegalArgumentException(msg("alias-bad-param", "param", spec));
+        String name = m.group(1);
+        String type = (m.group(2) != null) ? m.group(2).trim() : "string";
+        String defaultValue = m.group(3);
+        List<String> choices = Collections.emptyList();
+        if (type.contains("|")) {
+            choices = Arrays.asList(type.split("\\|"));
+            type = "choice";
+        } else if (!type.equals("string") && !type.equals("int") && !type.equals("text")) {
+            throw new IllegalArgumentException(msg("alias-bad-param", "param", spec));
+        }
+        for (Param p : previous) {
+            if (p.name.equals(name)) throw new IllegalArgumentException(msg("alias-bad-param", "param", spec));
+        }
+        // 必填参数不能排在可选参数之后
+        if (defaultValue == null && !previous.isEmpty() && previous.get(previous.size() - 1).defaultValue != null) {
+            throw new IllegalArgumentException(msg("alias-required-after-optional", "param", name));
+        }
+        Param param = new Param(name, type, choices, defaultValue);
+        if (defaultValue != null) check(param, defaultValue);
+        return param;
+    }
+
+    private void check(Param param, String value) {
+        if (param.type.equals("int")) {
+            try {
+                Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(msg("alias-bad-int", "param", param.name, "value", value));
+            }
+        } else if (param.type.equals("choice") && !param.choices.contains(value)) {
+            throw new IllegalArgumentException(msg("alias-bad-choice", "param", param.name, "choices", String.join("|", param.choices)));
+        }
+    }
+
+    public Set<String> getAliasNames() {
+        return aliases().keySet();
+    }
+
+    /**
+     * 用法说明，例如 "backup <world> [days=7] - Archive a world"；别名不存在时返回 null。
+     */
+    public String usage(String name) {
+        Alias alias = aliases().get(name);
+        if (alias == null) return null;
+        if (alias.error != null) return name + " §c(" + alias.error + ")";
+        StringBuilder sb = new StringBuilder(name);
+        for (Param p : alias.params) {
+            String label = p.type.equals("choice") ? String.join("|", p.choices) : p.type.equals("text") ? p.name + "..." : p.name;
+            sb.append(' ').append((p.defaultValue != null) ? "[" + label + "=" + p.defaultValue + "]" : "<" + label + ">");
+        }
+        if (alias.description != null) sb.append(" §7- ").append(alias.description);
+        return sb.toString();
+    }
+
+    /**
+     * 以 args[start..] 为参数展开别名，返回带有别名默认设置的运行参数；别名未指定环境时使用 defaultEnv。
+     * 别名不存在、定义有误或参数不合法时抛出 IllegalArgumentException（已本地化）。
+     */
+    public RunOptions resolve(String name, String[] args, int start, String defaultEnv) {
+        Alias alias = aliases().get(name);
+        if (alias == null) throw new IllegalArgumentException(msg("alias-not-found", "name", name));
+        if (alias.error != null) throw new IllegalArgumentException(msg("alias-invalid", "name", name, "error", alias.error));
+
+        List<String> values = new ArrayList<>(alias.params.size());
+        int i = start;
+        for (Param p : alias.params) {
+            String value = null;
+            if (p.type.equals("text")) {
+                if (i < args.length) value = String.join(" ", Arrays.copyOfRange(args, i, args.length));
+                i = args.length;
+            } else if (i < args.length) {
+                value = args[i++];
+            }
+            if (value == null) {
+                if (p.defaultValue == null) throw new IllegalArgumentException(msg("alias-missing-arg", "param", p.name, "usage", usage(name)));
+                value = p.defaultValue;
+            }
+            check(p, value);
+            values.add(value);
+        }
+        if (i < args.length) throw new IllegalArgumentException(msg("alias-too-many-args", "usage", usage(name)));
+
+        RunOptions options = new RunOptions(alias.template.expand(values)).workDir(alias.workDir).timeout(alias.timeout).profile(alias.profile).label(name);
+        options.env((alias.env != null) ? alias.env : defaultEnv);
+        return options;
+    }
+
+    /**
+     * 第 index 个参数的补全候选：可选值、默认值或参数名提示。
+     */
+    public List<String> complete(String name, int index, String input) {
+        Alias alias = aliases().get(name);
+        if (alias == null || alias.error != null || alias.params.isEmpty()) return Collections.emptyList();
+        Param p = alias.params.get(Math.min(index, alias.params.size() - 1));
+        if (index >= alias.params.size() && !p.type.equals("text")) return Collections.emptyList();
+        if (p.type.equals("choice")) {
+            List<String> result = new ArrayList<>();
+            for (String c : p.choices) {
+                if (c.startsWith(input)) result.add(c);
+            }
+            return result;
+        }
+        if (!input.isEmpty()) return Collections.emptyList();
+        return Collections.singletonList((p.defaultValue != null) ? p.defaultValue : "<" + p.name + ">");
+    }
+
+    private String msg(String key) {
+        return plugin.getI18n().get(key);
+    }
+
+    private String msg(String key, String p1, Object v1) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(p1, v1);
+        return plugin.getI18n().get(key, map);
+    }
+
+    private String msg(String key, String p1, Object v1, String p2, Object v2) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(p1, v1);
+        map.put(p2, v2);
+        return plugin.getI18n().get(key, map);
+    }
+}
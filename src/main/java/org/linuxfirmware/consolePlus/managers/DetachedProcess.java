@@ -0,0 +1,212 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 脱离插件运行的进程（run --detach）。进程在独立会话中启动，输出写入 spool 文件而不是 JVM 管道，
+ * 因此插件重载或服务器重启都不会结束它；状态文件记录重新接管所需的信息。
+ * 本类把 ProcessHandle 包装为 Process，停止、资源统计等逻辑与普通进程共用。
+ * 退出码由包装 shell 写入 exit 文件，重新接管的进程不是 JVM 的子进程，无法直接取得退出码。
+ */
+class DetachedProcess extends Process {
+    /**
+     * 包装脚本：$1 为实际命令，$2 为 exit 文件。
+     */
+    static final String WRAPPER = "sh -c \"$1\"; c=$?; echo $c > \"$2\"; exit $c";
+
+    /**
+     * 状态文件 detached/&lt;key&gt;.yml 的内容；spool 与 exit 文件与其同名。
+     */
+    static class State {
+        final File file;
+        long pid;
+        // /proc/<pid>/stat 中的启动时间（时钟滴答），用于识别 PID 是否已被复用
+        long startTicks;
+        long startedAt;
+        String command;
+        String label;
+        String env;
+        String workDir;
+        // 已输出到控制台的 spool 字节数
+        long offset;
+
+        State(File file) {
+            this.file = file;
+        }
+
+        File spool() {
+            return sibling(".out");
+        }
+
+        File exitFile() {
+            return sibling(".exit");
+        }
+
+        private File sibling(String suffix) {
+            String name = file.getName();
+            return new File(file.getParentFile(), name.substring(0, name.length() - ".yml".length()) + suffix);
+        }
+
+        static State load(File file) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+            State state = new State(file);
+            state.pid = config.getLong("pid");
+            state.startTicks = config.getLong("start-ticks");
+            state.startedAt = config.getLong("started-at");
+            state.command = config.getString("command", "");
+            state.label = config.getString("label");
+            state.env = config.getString("env", "default");
+            state.workDir = config.getString("dir");
+            state.offset = config.getLong("offset");
+            return state;
+        }
+
+        void save() throws IOException {
+            YamlConfiguration config = new YamlConfiguration();
+            config.set("pid", pid);
+            config.set("start-ticks", startTicks);
+            config.set("started-at", startedAt);
+            config.set("command", command);
+            config.set("label", label);
+            config.set("env", env);
+            config.set("dir", workDir);
+            config.set("offset", offset);
+            config.save(file);
+        }
+
+        void delete() {
+            file.delete();
+            spool().delete();
+            exitFile().delete();
+        }
+    }
+
+    private final ProcessHandle handle;
+    private final File exitFile;
+
+    DetachedProcess(ProcessHandle handle, File exitFile) {
+        this.handle = handle;
+        this.exitFile = exitFile;
+    }
+
+    /**
+     * 按 PID 查找仍在运行且启动时间与记录一致的进程；进程已结束或 PID 已被复用时返回 null。
+     * 没有 /proc 的系统只能按 PID 判断。
+     */
+    static DetachedProcess find(State state) {
+        Optional<ProcessHandle> handle = ProcessHandle.of(state.pid);
+        if (!handle.isPresent() || !handle.get().isAlive()) return null;
+        if (state.startTicks >= 0 && startTicks(state.pid) != state.startTicks) return null;
+        return new DetachedProcess(handle.get(), state.exitFile());
+    }
+
+    /**
+     * 读取 /proc/&lt;pid&gt;/stat 的第 22 个字段（启动时间）；无法读取时返回 -1。
+     */
+    static long startTicks(long pid) {
+        try {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc", String.valueOf(pid), "stat")), StandardCharsets.US_ASCII);
+            // 第 2 个字段（进程名）可能含空格，从最后一个 ')' 之后开始计数
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[19]);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * exit 文件中记录的退出码；进程被信号终止或文件不存在时返回 -1。
+     */
+    static int readExitCode(File exitFile) {
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(exitFile.toPath()), StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            handle.onExit().get();
+        } catch (ExecutionException e) {
+            // ProcessHandle.onExit 不会异常完成
+        }
+        return exitValue();
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            handle.onExit().get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return !handle.isAlive();
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        if (handle.isAlive()) throw new IllegalThreadStateException("process hasn't exited");
+        return readExitCode(exitFile);
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return handle.onExit().thenApply(h -> this);
+    }
+
+    @Override
+    public void destroy() {
+        handle.destroy();
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        handle.destroyForcibly();
+        return this;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return handle.isAlive();
+    }
+
+    @Override
+    public long pid() {
+        return handle.pid();
+    }
+
+    @Override
+    public ProcessHandle toHandle() {
+        return handle;
+    }
+}
@@ -1,7 +1,6 @@
 package org.linuxfirmware.consolePlus.managers;
 
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.linuxfirmware.consolePlus.ConsolePlus;
 
 import java.io.File;
 import java.io.IOException;
@@ -11,11 +10,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class EnvironmentManager {
-    private final ConsolePlus plugin;
+    private final ProcessHost plugin;
     private final File envFile;
     private final Map<String, List<String>> environments = new ConcurrentHashMap<>();
 
-    public EnvironmentManager(ConsolePlus plugin) {
+    public EnvironmentManager(ProcessHost plugin) {
         this.plugin = plugin;
         this.envFile = new File(plugin.getDataFolder(), "environments.yml");
         loadEnvironments();
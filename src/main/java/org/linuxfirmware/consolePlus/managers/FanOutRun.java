@@ -0,0 +1,147 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.command.ConsoleCommandSender;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+import org.linuxfirmware.consolePlus.api.ShellJob;
+import org.linuxfirmware.consolePlus.api.ShellResult;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次 run-all：在多个目录中执行同一命令。不占用任何等待线程，
+ * 每个任务结束时才启动下一个目标，因此同时运行的进程数不超过 parallelism。
+ */
+class FanOutRun {
+    private final ProcessHost plugin;
+    private final ProcessManager manager;
+    private final List<File> targets;
+    private final List<String> labels;
+    private final RunOptions template;
+    private final int parallelism;
+    private final ConsoleCommandSender sender;
+    private final ShellResult[] results;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+    private final long startTime = System.currentTimeMillis();
+
+    FanOutRun(ProcessHost plugin, ProcessManager manager, List<File> targets, RunOptions template, int parallelism, ConsoleCommandSender sender) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.targets = targets;
+        this.labels = labelsFor(targets);
+        this.template = template;
+        this.parallelism = Math.max(1, Math.min(parallelism, targets.size()));
+        this.sender = sender;
+        this.results = new ShellResult[targets.size()];
+    }
+
+    void start() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("count", targets.size());
+        map.put("jobs", parallelism);
+        notify(plugin.getI18n().get("prefix") + plugin.getI18n().get("runall-starting", map));
+        for (int i = 0; i < parallelism; i++) launchNext();
+    }
+
+    private void launchNext() {
+        int index = next.getAndIncrement();
+        if (index >= targets.size()) return;
+        RunOptions options = new RunOptions(template.getCommand())
+            .workDir(targets.get(index).getPath())
+            .env(template.getEnvName())
+            .timeout(template.getTimeout())
+            .grep(template.getGrep())
+            .exclude(template.getExclude())
+            .highlight(template.getHighlight())
+            .stdin(template.getStdinFile())
+            .separateStderr(template.getSeparateStderr())
+            .profile(template.getProfile())
+            .detach(template.isDetach())
+            .triggers(template.getTriggers())
+            .label(labels.get(index));
+        template.getVariables().forEach(options::variable);
+        ShellJob job = manager.executeAsync(options, sender);
+        if (job == null) {
+            // 启动失败已由 executeAsync 报告，记为失败并继续下一个目标
+            completed(index, new ShellResult(-1, -1, 0, 0));
+            return;
+        }
+        job.onExit().whenComplete((result, error) ->
+            completed(index, (result != null) ? result : new ShellResult(job.getId(), -1, 0, 0)));
+    }
+
+    private void completed(int index, ShellResult result) {
+        results[index] = result;
+        if (done.incrementAndGet() == targets.size()) {
+            summarize();
+        } else {
+            launchNext();
+        }
+    }
+
+    /**
+     * 输出汇总：失败的目标在前，其余保持目标顺序。
+     */
+    private void summarize() {
+        List<Integer> order = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < results.length; i++) {
+            if (!results[i].isSuccess()) {
+                order.add(i);
+                failed++;
+            }
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].isSuccess()) order.add(i);
+        }
+
+        Map<String, Object> header = new HashMap<>();
+        header.put("count", targets.size());
+        header.put("failed", failed);
+        header.put("time", formatDuration(System.currentTimeMillis() - startTime));
+        notify(plugin.getI18n().get(failed > 0 ? "error-prefix" : "prefix") + plugin.getI18n().get("runall-summary", header));
+        for (int i : order) {
+            ShellResult r = results[i];
+            Map<String, Object> map = new HashMap<>();
+            map.put("status", r.isSuccess() ? "§a✔" : "§c✘");
+            map.put("label", labels.get(i));
+            map.put("code", r.getExitCode());
+            map.put("time", formatDuration(r.getDurationMillis()));
+            map.put("bytes", formatBytes(r.getOutputBytes()));
+            notify(plugin.getI18n().get("runall-summary-line", map));
+        }
+    }
+
+    private void notify(String message) {
+        if (sender != null) sender.sendMessage(message);
+    }
+
+    /**
+     * 默认使用目录名作为标签，目录名重复时改用完整路径。
+     */
+    private static List<String> labelsFor(List<File> targets) {
+        Set<String> seen = new HashSet<>();
+        boolean unique = true;
+        for (File f : targets) unique &= seen.add(f.getName());
+        List<String> labels = new ArrayList<>();
+        for (File f : targets) labels.add(unique ? f.getName() : f.getPath());
+        return labels;
+    }
+
+    static String formatDuration(long millis) {
+        return (millis < 60_000) ? String.format("%.1fs", millis / 1000.0) : (millis / 60_000) + "m" + (millis / 1000 % 60) + "s";
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f kB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,312 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 进程内的 tail：所有被跟踪的文件共用一个线程和一个读缓冲，不创建子进程。
+ * WatchService 用于及时唤醒，同时按固定间隔轮询，兼容不产生文件事件的文件系统。
+ * 文件被截断时从头读取；文件被轮转（路径指向了新文件）时先读完旧文件的剩余内容再切换到新文件。
+ */
+class FileTailer implements Runnable {
+    private static final long POLL_MILLIS = 250;
+    // 单个文件每轮最多读取的字节数，避免一个大文件让其他文件饥饿
+    private static final int MAX_READ_PER_ROUND = 1024 * 1024;
+
+    interface Listener {
+        /**
+         * 在跟踪线程中调用，data 为共享读缓冲，只在回调期间有效。
+         */
+        void data(byte[] data, int length);
+
+        void closed();
+    }
+
+    /**
+     * 一个被跟踪的文件。除 closed 外的字段只由跟踪线程访问。
+     */
+    static class Tail {
+        final Path path;
+        final Path dir;
+        final int initialLines;
+        final boolean follow;
+        final Listener listener;
+        // 大于等于 0 时从该偏移开始读取，而不是最后 initialLines 行
+        final long startOffset;
+        volatile boolean closed = false;
+        // 读完当前内容后结束跟踪（写入方已退出）
+        volatile boolean ending = false;
+        private FileChannel channel;
+        private Object identity;
+        private volatile long position;
+        private boolean started = false;
+
+        Tail(Path path, int initialLines, boolean follow, Listener listener) {
+            this(path, initialLines, -1, follow, listener);
+        }
+
+        Tail(Path path, long startOffset, boolean follow, Listener listener) {
+            this(path, 0, startOffset, follow, listener);
+        }
+
+        private Tail(Path path, int initialLines, long startOffset, boolean follow, Listener listener) {
+            this.path = path.toAbsolutePath().normalize();
+            this.dir = this.path.getParent();
+            this.initialLines = initialLines;
+            this.startOffset = startOffset;
+            this.follow = follow;
+            this.listener = listener;
+        }
+
+        /**
+         * 已读取（已交给 listener）的字节位置。
+         */
+        long position() {
+            return position;
+        }
+    }
+
+    private final Logger logger;
+    private final List<Tail> tails = new CopyOnWriteArrayList<>();
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private final byte[] buffer = new byte[64 * 1024];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer);
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    FileTailer(Logger logger) {
+        this.logger = logger;
+    }
+
+    synchronized void add(Tail tail) {
+        if (thread == null) {
+            try {
+                watcher = FileSystems.getDefault().newWatchService();
+            } catch (IOException | UnsupportedOperationException e) {
+                watcher = null;
+            }
+            running = true;
+            thread = new Thread(this, "ConsolePlus-tail");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (tail.follow && watcher != null && tail.dir != null && !watchKeys.containsKey(tail.dir)) {
+            try {
+                watchKeys.put(tail.dir, tail.dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+            } catch (IOException ignored) {
+                // 退回为纯轮询
+            }
+        }
+        tails.add(tail);
+    }
+
+    /**
+     * 停止跟踪线程并关闭所有文件，在插件停用时调用。文件由跟踪线程自己关闭：
+     * listener 可能还持有 assembler 的锁，在调用线程中关闭可能永远等待。
+     */
+    void shutdown() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = thread;
+            thread = null;
+        }
+        if (t == null) return;
+        try {
+            if (watcher != null) watcher.close();
+        } catch (IOException ignored) {}
+        try {
+            t.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (t.isAlive()) {
+            logger.warning("Tail thread did not stop in time; " + tails.size() + " tail(s) will be closed when it finishes");
+            return;
+        }
+        // 跟踪线程异常退出时剩下的文件
+        for (Tail tail : tails) close(tail);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                boolean more = false;
+                for (Tail tail : tails) more |= poll(tail);
+                if (more) continue;
+                if (watcher == null) {
+                    Thread.sleep(POLL_MILLIS);
+                    continue;
+                }
+                // 任何目录事件都只是唤醒信号，醒来后统一检查所有文件
+                WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                    key = watcher.poll();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // 停用插件
+        } finally {
+            for (Tail tail : tails) close(tail);
+        }
+    }
+
+    /**
+     * 读取一个文件的新内容，返回 true 表示还有未读完的数据。
+     * listener 抛出的异常只结束该文件的跟踪，共享的跟踪线程继续运行。
+     */
+    private boolean poll(Tail tail) {
+        try {
+            return pollTail(tail);
+        } catch (RuntimeException e) {
+            logger.warning("Error while tailing " + tail.path + ": " + e);
+            close(tail);
+            return false;
+        }
+    }
+
+    private boolean pollTail(Tail tail) {
+        if (tail.closed) {
+            close(tail);
+            return false;
+        }
+        try {
+            if (tail.channel == null && !open(tail)) return false;
+            if (drain(tail)) return true;
+            if (!tail.follow || tail.ending) {
+                close(tail);
+                return false;
+            }
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(tail.path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // 正在轮转，旧文件已移走而新文件尚未创建
+                return false;
+            }
+            if (!identityOf(attrs).equals(tail.identity)) {
+                // 轮转：旧文件已读完，切换到新文件并从头读取
+                closeChannel(tail);
+                return open(tail);
+            }
+            if (attrs.size() < tail.position) {
+                // 截断：从头重新读取
+                tail.position = 0;
+                return true;
+            }
+        } catch (IOException e) {
+            closeChannel(tail);
+        }
+        return false;
+    }
+
+    private boolean open(Tail tail) throws IOException {
+        if (!Files.isRegularFile(tail.path)) {
+            if (!tail.follow || tail.ending) close(tail);
+            return false;
+        }
+        tail.channel = FileChannel.open(tail.path, StandardOpenOption.READ);
+        Object identity = identityOf(Files.readAttributes(tail.path, BasicFileAttributes.class));
+        if (tail.started) {
+            // 只有轮转后的新文件从头读取；读取出错后重新打开同一个文件时从原位置继续（截断由 pollTail 处理）
+            if (!identity.equals(tail.identity)) tail.position = 0;
+            tail.identity = identity;
+        } else {
+            tail.identity = identity;
+            tail.started = true;
+            tail.position = (tail.startOffset >= 0) ? Math.min(tail.startOffset, tail.channel.size()) : startOfLastLines(tail.channel, tail.initialLines);
+        }
+        return true;
+    }
+
+    private boolean drain(Tail tail) throws IOException {
+        int total = 0;
+        while (total < MAX_READ_PER_ROUND) {
+            view.clear();
+            int n = tail.channel.read(view, tail.position);
+            if (n <= 0) return false;
+            tail.position += n;
+            total += n;
+            tail.listener.data(buffer, n);
+        }
+        return true;
+    }
+
+    /**
+     * 从文件末尾向前查找，返回最后 lines 行的起始位置。
+     */
+    private long startOfLastLines(FileChannel channel, int lines) throws IOException {
+        long size = channel.size();
+        if (lines <= 0) return size;
+        long pos = size;
+        int count = 0;
+        while (pos > 0) {
+            int n = (int) Math.min(buffer.length, pos);
+            pos -= n;
+            view.clear().limit(n);
+            int read = 0;
+            while (read < n) {
+                int r = channel.read(view, pos + read);
+                if (r < 0) break;
+                read += r;
+            }
+            for (int i = read - 1; i >= 0; i--) {
+                if (buffer[i] != '\n' || pos + i == size - 1) continue;
+                if (++count == lines) return pos + i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void close(Tail tail) {
+        if (!tails.remove(tail)) return;
+        closeChannel(tail);
+        synchronized (this) {
+            boolean dirInUse = tails.stream().anyMatch(t -> t.follow && t.dir != null && t.dir.equals(tail.dir));
+            if (!dirInUse) {
+                WatchKey key = watchKeys.remove(tail.dir);
+                if (key != null) key.cancel();
+            }
+        }
+        try {
+            tail.listener.closed();
+        } catch (RuntimeException e) {
+            logger.warning("Error while closing tail of " + tail.path + ": " + e);
+        }
+    }
+
+    private static void closeChannel(Tail tail) {
+        if (tail.channel != null) {
+            try {
+                tail.channel.close();
+            } catch (IOException ignored) {}
+            tail.channel = null;
+        }
+    }
+
+    private static Object identityOf(BasicFileAttributes attrs) {
+        // 没有 inode 信息的平台（Windows）退回为创建时间
+        return (attrs.fileKey() != null) ? attrs.fileKey() : attrs.creationTime();
+    }
+}
@@ -0,0 +1,215 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.linuxfirmware.consolePlus.ConsolePlus;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 读取 jobs.yml 中的任务图定义并启动执行。文件在修改后的下一次访问时自动重新加载。
+ *
+ * <pre>
+ * deploy:
+ *   on-failure: fail-fast   # 或 continue：只跳过依赖失败步骤的后续步骤
+ *   parallelism: 0          # 同时运行的步骤上限，0 表示只受依赖关系限制
+ *   steps:
+ *     build-a: { run: "mvn -q package", dir: /srv/a, env: java17, retries: 1 }
+ *     build-b: { run: "npm run build", dir: /srv/b, profile: background }
+ *     package: { run: "./package.sh", needs: [build-a, build-b], timeout: 600 }
+ * </pre>
+ */
+public class JobManager {
+    private final ConsolePlus plugin;
+    private final ProcessManager processManager;
+    private final EnvironmentManager envManager;
+    private final File jobsFile;
+    private final Map<String, JobRun> running = new ConcurrentHashMap<>();
+    private Map<String, ConfigurationSection> definitions = Collections.emptyMap();
+    private long loadedModified = -1;
+
+    static class Step {
+        final String name;
+        final String command;
+        final String workDir;
+        final String env;
+        final Integer timeout;
+        final int retries;
+        final List<String> needs;
+        final String profile;
+
+        Step(String name, String command, String workDir, String env, Integer timeout, int retries, List<String> needs, String profile) {
+            this.name = name;
+            this.command = command;
+            this.workDir = workDir;
+            this.env = env;
+            this.timeout = timeout;
+            this.retries = retries;
+            this.needs = needs;
+            this.profile = profile;
+        }
+    }
+
+    static class Job {
+        final String name;
+        final boolean failFast;
+        final int parallelism;
+        // 拓扑序，依赖总是排在被依赖者之后
+        final List<Step> steps;
+
+        Job(String name, boolean failFast, int parallelism, List<Step> steps) {
+            this.name = name;
+            this.failFast = failFast;
+            this.parallelism = parallelism;
+            this.steps = steps;
+        }
+    }
+
+    public JobManager(ConsolePlus plugin, ProcessManager processManager, EnvironmentManager envManager) {
+        this.plugin = plugin;
+        this.processManager = processManager;
+        this.envManager = envManager;
+        this.jobsFile = new File(plugin.getDataFolder(), "jobs.yml");
+    }
+
+    private synchronized Map<String, ConfigurationSection> definitions() {
+        long modified = jobsFile.exists() ? jobsFile.lastModified() : 0;
+        if (modified != loadedModified) {
+            loadedModified = modified;
+            Map<String, ConfigurationSection> map = new LinkedHashMap<>();
+            if (modified != 0) {
+                YamlConfiguration config = YamlConfiguration.loadConfiguration(jobsFile);
+                for (String key : config.getKeys(false)) {
+                    if (config.isConfigurationSection(key)) map.put(key, config.getConfigurationSection(key));
+                }
+            }
+            definitions = map;
+        }
+        return definitions;
+    }
+
+    public Set<String> getJobNames() {
+        return definitions().keySet();
+    }
+
+    public boolean isRunning(String name) {
+        return running.containsKey(name);
+    }
+
+    /**
+     * 解析并启动一个任务图。定义有误或同名任务仍在运行时返回错误信息（已本地化），成功时返回 null。
+     */
+    public String run(String name, ConsoleCommandSender sender) {
+        ConfigurationSection section = definitions().get(name);
+        if (section == null) return msg("job-not-found", "name", name);
+        Job job;
+        try {
+            job = parse(name, section);
+        } catch (IllegalArgumentException e) {
+            return msg("job-invalid", "name", name, "error", e.getMessage());
+        }
+        JobRun run = new JobRun(plugin, processManager, job, sender, () -> running.remove(name));
+        if (running.putIfAbsent(name, run) != null) return msg("job-already-running", "name", name);
+        run.start();
+        return null;
+    }
+
+    private Job parse(String name, ConfigurationSection section) {
+        String policy = section.getString("on-failure", "fail-fast");
+        if (!policy.equalsIgnoreCase("fail-fast") && !policy.equalsIgnoreCase("continue")) {
+            throw new IllegalArgumentException(msg("job-bad-policy", "policy", policy));
+        }
+        int parallelism = section.getInt("parallelism", plugin.getConfig().getInt("job-parallelism", 0));
+        ConfigurationSection stepsSection = section.getConfigurationSection("steps");
+        if (stepsSection == null || stepsSection.getKeys(false).isEmpty()) {
+            throw new IllegalArgumentException(msg("job-no-steps"));
+        }
+
+        Map<String, Step> steps = new LinkedHashMap<>();
+        for (String stepName : stepsSection.getKeys(false)) {
+            ConfigurationSection s = stepsSection.getConfigurationSection(stepName);
+            String command = (s != null) ? s.getString("run") : stepsSection.getString(stepName);
+            if (command == null || command.trim().isEmpty()) {
+                throw new IllegalArgumentException(msg("job-step-no-command", "step", stepName));
+            }
+            if (s == null) {
+                // 简写形式：step: "command"
+                steps.put(stepName, new Step(stepName, command, null, "default", null, 0, Collections.emptyList(), null));
+                continue;
+            }
+            String env = s.getString("env", "default");
+            if (!envManager.exists(env)) throw new IllegalArgumentException(msg("job-step-bad-env", "step", stepName, "env", env));
+            List<String> needs = new ArrayList<>(new LinkedHashSet<>(s.isList("needs") ? s.getStringList("needs")
+                : s.isString("needs") ? Collections.singletonList(s.getString("needs")) : Collections.<String>emptyList()));
+            String profile = s.getString("profile");
+            if (profile != null && !profile.equalsIgnoreCase("none") && !processManager.getProfileNames().contains(profile)) {
+                throw new IllegalArgumentException(msg("job-step-bad-profile", "step", stepName, "profile", profile));
+            }
+            Integer timeout = s.contains("timeout") ? s.getInt("timeout") : null;
+            steps.put(stepName, new Step(stepName, command, s.getString("dir"), env, timeout, Math.max(0, s.getInt("retries", 0)), needs, profile));
+        }
+        return new Job(name, policy.equalsIgnoreCase("fail-fast"), parallelism, topologicalOrder(steps));
+    }
+
+    /**
+     * Kahn 算法排序，同时检查未知依赖与循环依赖。同一层内保持文件中的顺序。
+     */
+    private List<Step> topologicalOrder(Map<String, Step> steps) {
+        Map<String, Integer> pending = new HashMap<>();
+        Map<String, List<Step>> dependents = new HashMap<>();
+        for (Step step : steps.values()) {
+            for (String dep : step.needs) {
+                if (!steps.containsKey(dep)) throw new IllegalArgumentException(msg("job-unknown-dep", "step", step.name, "dep", dep));
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>()).add(step);
+            }
+            pending.put(step.name, step.needs.size());
+        }
+        Deque<Step> ready = new ArrayDeque<>();
+        for (Step step : steps.values()) {
+            if (pending.get(step.name) == 0) ready.add(step);
+        }
+        List<Step> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Step step = ready.poll();
+            order.add(step);
+            for (Step next : dependents.getOrDefault(step.name, Collections.emptyList())) {
+                if (pending.merge(next.name, -1, Integer::sum) == 0) ready.add(next);
+            }
+        }
+        if (order.size() < steps.size()) {
+            List<String> cycle = new ArrayList<>();
+            steps.keySet().stream().filter(n -> pending.get(n) > 0).forEach(cycle::add);
+            throw new IllegalArgumentException(msg("job-cycle", "steps", String.join(", ", cycle)));
+        }
+        return order;
+    }
+
+    private String msg(String key) {
+        return plugin.getI18n().get(key);
+    }
+
+    private String msg(String key, String p1, Object v1) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(p1, v1);
+        return plugin.getI18n().get(key, map);
+    }
+
+    private String msg(String key, String p1, Object v1, String p2, Object v2) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(p1, v1);
+        map.put(p2, v2);
+        return plugin.getI18n().get(key, map);
+    }
+}
@@ -0,0 +1,256 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.command.ConsoleCommandSender;
+import org.linuxfirmware.consolePlus.ConsolePlus;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+import org.linuxfirmware.consolePlus.api.ShellJob;
+import org.linuxfirmware.consolePlus.api.ShellResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 一次任务图执行。与 {@link FanOutRun} 一样不占用等待线程：每个步骤结束时才检查并启动
+ * 依赖已满足的步骤。所有状态变更都在实例锁内进行，回调来自各进程的输出线程。
+ */
+class JobRun {
+    private enum State { PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED, SKIPPED }
+
+    private static class StepRun {
+        final JobManager.Step step;
+        final List<StepRun> deps = new ArrayList<>();
+        final List<StepRun> dependents = new ArrayList<>();
+        State state = State.PENDING;
+        int waiting;
+        int attempts = 0;
+        // 相对任务开始的毫秒数，重试时 start 保持第一次启动的时间
+        long start = -1;
+        long end = -1;
+        ShellJob job;
+        ShellResult result;
+
+        StepRun(JobManager.Step step) {
+            this.step = step;
+        }
+    }
+
+    private final ConsolePlus plugin;
+    private final ProcessManager manager;
+    private final JobManager.Job job;
+    private final ConsoleCommandSender sender;
+    private final Runnable onDone;
+    private final List<StepRun> steps = new ArrayList<>();
+    private final long startTime = System.currentTimeMillis();
+    private int running = 0;
+    private int finished = 0;
+    private boolean aborted = false;
+
+    JobRun(ConsolePlus plugin, ProcessManager manager, JobManager.Job job, ConsoleCommandSender sender, Runnable onDone) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.job = job;
+        this.sender = sender;
+        this.onDone = onDone;
+        Map<String, StepRun> byName = new HashMap<>();
+        for (JobManager.Step step : job.steps) {
+            StepRun run = new StepRun(step);
+            for (String dep : step.needs) {
+                StepRun d = byName.get(dep);
+                run.deps.add(d);
+                d.dependents.add(run);
+            }
+            run.waiting = run.deps.size();
+            byName.put(step.name, run);
+            steps.add(run);
+        }
+    }
+
+    synchronized void start() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("job", job.name);
+        map.put("count", steps.size());
+        map.put("policy", job.failFast ? "fail-fast" : "continue");
+        notify(msg("prefix") + plugin.getI18n().get("job-starting", map));
+        advance();
+    }
+
+    /**
+     * 启动所有依赖已满足的步骤（受 parallelism 限制），全部步骤结束后输出汇总。
+     */
+    private void advance() {
+        if (finished < 0) return;
+        for (StepRun s : steps) {
+            if (aborted || (job.parallelism > 0 && running >= job.parallelism)) break;
+            if (s.state == State.PENDING && s.waiting == 0) launch(s);
+        }
+        if (running == 0 && finished < steps.size()) {
+            // 中止后剩余的步骤不再启动
+            for (StepRun s : steps) {
+                if (s.state == State.PENDING) skip(s);
+            }
+        }
+        if (finished == steps.size()) {
+            finished = -1;
+            summarize();
+            onDone.run();
+        }
+    }
+
+    private void launch(StepRun s) {
+        JobManager.Step step = s.step;
+        s.state = State.RUNNING;
+        s.attempts++;
+        if (s.start < 0) s.start = elapsed();
+        running++;
+        status(s, "§e▶", (s.attempts > 1) ? msg("job-step-attempt", "n", s.attempts, "max", step.retries + 1) : "");
+        RunOptions options = new RunOptions(step.command).workDir(step.workDir).env(step.env).timeout(step.timeout).profile(step.profile).label(step.name);
+        ShellJob shellJob = manager.executeAsync(options, sender);
+        s.job = shellJob;
+        if (shellJob == null) {
+            // 启动失败已由 executeAsync 报告
+            completed(s, new ShellResult(-1, -1, 0, 0));
+            return;
+        }
+        shellJob.onExit().whenComplete((result, error) ->
+            completed(s, (result != null) ? result : new ShellResult(shellJob.getId(), -1, 0, 0)));
+    }
+
+    private synchronized void completed(StepRun s, ShellResult result) {
+        running--;
+        s.result = result;
+        if (!result.isSuccess() && !aborted && s.attempts <= s.step.retries) {
+            s.state = State.PENDING;
+            status(s, "§6↻", msg("job-step-retry", "code", result.getExitCode()));
+            advance();
+            return;
+        }
+        s.end = elapsed();
+        finished++;
+        if (result.isSuccess()) {
+            s.state = State.SUCCEEDED;
+            status(s, "§a✔", FanOutRun.formatDuration(s.end - s.start));
+            for (StepRun d : s.dependents) d.waiting--;
+        } else if (aborted) {
+            s.state = State.CANCELLED;
+            status(s, "§7■", msg("job-step-cancelled"));
+        } else {
+            s.state = State.FAILED;
+            status(s, "§c✘", msg("job-step-failed", "code", result.getExitCode(), "time", FanOutRun.formatDuration(s.end - s.start)));
+            if (job.failFast) {
+                aborted = true;
+                for (StepRun other : steps) {
+                    if (other.state == State.RUNNING && other.job != null) other.job.stop();
+                }
+            } else {
+                skipDependents(s);
+            }
+        }
+        advance();
+    }
+
+    private void skipDependents(StepRun s) {
+        for (StepRun d : s.dependents) {
+            if (d.state == State.PENDING) {
+                skip(d);
+                skipDependents(d);
+            }
+        }
+    }
+
+    private void skip(StepRun s) {
+        s.state = State.SKIPPED;
+        finished++;
+        status(s, "§8⊘", msg("job-step-skipped"));
+    }
+
+    /**
+     * 输出每个步骤的结果与关键路径：从最后结束的步骤开始，沿最晚结束的依赖回溯，
+     * 得到决定总耗时的步骤链，以及每一步在依赖满足后因并行数限制而等待的时间。
+     */
+    private void summarize() {
+        long total = elapsed();
+        long failed = steps.stream().filter(s -> s.state == State.FAILED || s.state == State.CANCELLED).count();
+        long skipped = steps.stream().filter(s -> s.state == State.SKIPPED).count();
+        Map<String, Object> header = new HashMap<>();
+        header.put("job", job.name);
+        header.put("time", FanOutRun.formatDuration(total));
+        header.put("count", steps.size());
+        header.put("failed", failed);
+        header.put("skipped", skipped);
+        notify(msg((failed + skipped > 0) ? "error-prefix" : "prefix") + plugin.getI18n().get("job-summary", header));
+
+        List<StepRun> ran = steps.stream().filter(s -> s.end >= 0).collect(Collectors.toList());
+        List<StepRun> path = new ArrayList<>();
+        StepRun cur = ran.stream().max(Comparator.comparingLong(s -> s.end)).orElse(null);
+        while (cur != null) {
+            path.add(0, cur);
+            cur = cur.deps.stream().filter(d -> d.end >= 0).max(Comparator.comparingLong(d -> d.end)).orElse(null);
+        }
+        if (!path.isEmpty()) {
+            List<String> parts = new ArrayList<>();
+            long prevEnd = 0;
+            for (StepRun s : path) {
+                String part = "§f" + s.step.name + " §7" + FanOutRun.formatDuration(s.end - s.start);
+                // 超过 100ms 的排队等待才值得显示
+                if (s.start - prevEnd > 100) part += " " + msg("job-wait", "time", FanOutRun.formatDuration(s.start - prevEnd));
+                parts.add(part);
+                prevEnd = s.end;
+            }
+            notify(msg("job-critical-path", "time", FanOutRun.formatDuration(path.get(path.size() - 1).end), "path", String.join(" §8→ ", parts)));
+        }
+
+        ran.sort(Comparator.comparingLong(s -> s.start));
+        for (StepRun s : ran) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("status", (s.state == State.SUCCEEDED) ? "§a✔" : "§c✘");
+            map.put("critical", path.contains(s) ? "§e*" : " ");
+            map.put("step", s.step.name);
+            map.put("start", FanOutRun.formatDuration(s.start));
+            map.put("time", FanOutRun.formatDuration(s.end - s.start));
+            map.put("attempts", s.attempts);
+            map.put("code", s.result.getExitCode());
+            notify(plugin.getI18n().get("job-summary-line", map));
+        }
+    }
+
+    private void status(StepRun s, String symbol, String detail) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("job", job.name);
+        map.put("status", symbol);
+        map.put("step", s.step.name);
+        map.put("detail", detail);
+        map.put("done", Math.max(finished, 0));
+        map.put("total", steps.size());
+        map.put("running", running);
+        notify(plugin.getI18n().get("job-step-status", map));
+    }
+
+    private long elapsed() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    private void notify(String message) {
+        if (sender != null) sender.sendMessage(message);
+    }
+
+    private String msg(String key) {
+        return plugin.getI18n().get(key);
+    }
+
+    private String msg(String key, String p1, Object v1) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(p1, v1);
+        return plugin.getI18n().get(key, map);
+    }
+
+    private String msg(String key, String p1, Object v1, String p2, Object v2) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(p1, v1);
+        map.put(p2, v2);
+        return plugin.getI18n().get(key, map);
+    }
+}
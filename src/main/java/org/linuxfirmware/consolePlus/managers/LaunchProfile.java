@@ -0,0 +1,193 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 启动配置：用 nice、ionice 与 taskset 包装启动命令。三者都只修改自身属性后 exec 下一个程序，
+ * 因此调度优先级与 CPU 亲和性由 shell 及其启动的整棵进程树继承。系统中缺少的工具会被跳过。
+ *
+ * <pre>
+ * background:
+ *   nice: 10            # -20..19
+ *   ionice: idle        # idle | best-effort[:0-7] | realtime[:0-7]
+ *   cpus: auto          # taskset 格式的 CPU 列表（如 "2-7"），auto 表示除保留核心外服务器进程可用的全部核心
+ * </pre>
+ */
+class LaunchProfile {
+    private static final String NICE = ProcessTerminator.locate("nice");
+    private static final String IONICE = ProcessTerminator.locate("ionice");
+    private static final String TASKSET = ProcessTerminator.locate("taskset");
+
+    final String name;
+    private final Integer nice;
+    private final int ioClass;
+    private final Integer ioLevel;
+    private final BitSet cpus;
+
+    private LaunchProfile(String name, Integer nice, int ioClass, Integer ioLevel, BitSet cpus) {
+        this.name = name;
+        this.nice = nice;
+        this.ioClass = ioClass;
+        this.ioLevel = ioLevel;
+        this.cpus = cpus;
+    }
+
+    /**
+     * 解析配置中的一个启动配置。reserved 中的核心（服务器主线程使用的核心）会从 CPU 列表中去除，
+     * 除非配置了 use-reserved: true。数值无效时抛出 IllegalArgumentException。
+     */
+    static LaunchProfile parse(String name, ConfigurationSection section, String reserved) {
+        Integer nice = null;
+        if (section.contains("nice")) {
+            nice = section.getInt("nice");
+            if (nice < -20 || nice > 19) throw new IllegalArgumentException("nice: " + nice);
+        }
+
+        int ioClass = 0;
+        Integer ioLevel = null;
+        String io = section.getString("ionice");
+        if (io != null && !io.isEmpty()) {
+            String[] parts = io.toLowerCase().split(":", 2);
+            switch (parts[0].trim()) {
+                case "idle": ioClass = 3; break;
+                case "best-effort": ioClass = 2; break;
+                case "realtime": ioClass = 1; break;
+                default: throw new IllegalArgumentException("ionice: " + io);
+            }
+            if (parts.length > 1) {
+                try {
+                    ioLevel = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("ionice: " + io);
+                }
+                if (ioLevel < 0 || ioLevel > 7 || ioClass == 3) throw new IllegalArgumentException("ionice: " + io);
+            }
+        }
+
+        BitSet cpus = null;
+        String spec = section.getString("cpus");
+        if (spec != null && !spec.isEmpty()) {
+            BitSet online = allowedCpus();
+            if (spec.equalsIgnoreCase("auto")) {
+                cpus = online;
+            } else {
+                cpus = parseCpuList(spec);
+                if (cpus == null) throw new IllegalArgumentException("cpus: " + spec);
+                cpus.and(online);
+            }
+            if (!section.getBoolean("use-reserved", false)) {
+                BitSet excluded = parseCpuList(reserved);
+                if (excluded != null) cpus.andNot(excluded);
+            }
+            // 排除后没有可用核心时不限制亲和性，避免 taskset 直接失败
+            if (cpus.isEmpty()) cpus = null;
+        }
+        return new LaunchProfile(name, nice, ioClass, ioLevel, cpus);
+    }
+
+    /**
+     * 放在 "sh -c" 之前的命令前缀。
+     */
+    List<String> prefix() {
+        List<String> command = new ArrayList<>();
+        if (cpus != null && TASKSET != null) {
+            command.add(TASKSET);
+            command.add("-c");
+            command.add(formatCpuList(cpus));
+        }
+        if (ioClass != 0 && IONICE != null) {
+            command.add(IONICE);
+            // -t：没有权限设置该类别（如 realtime）时仍然执行命令
+            command.add("-t");
+            command.add("-c");
+            command.add(String.valueOf(ioClass));
+            if (ioLevel != null) {
+                command.add("-n");
+                command.add(String.valueOf(ioLevel));
+            }
+        }
+        if (nice != null && NICE != null) {
+            command.add(NICE);
+            command.add("-n");
+            command.add(String.valueOf(nice));
+        }
+        return command;
+    }
+
+    /**
+     * 实际生效的设置（缺少的工具不计入），用于 /shell list。
+     */
+    String describe() {
+        List<String> parts = new ArrayList<>();
+        if (nice != null && NICE != null) parts.add("nice " + nice);
+        if (ioClass != 0 && IONICE != null) {
+            String cls = (ioClass == 3) ? "idle" : (ioClass == 2) ? "best-effort" : "realtime";
+            parts.add((ioLevel != null) ? cls + ":" + ioLevel : cls);
+        }
+        if (cpus != null && TASKSET != null) parts.add("cpu " + formatCpuList(cpus));
+        return parts.isEmpty() ? name : name + ": " + String.join(", ", parts);
+    }
+
+    /**
+     * 本进程允许使用的 CPU（/proc/self/status 的 Cpus_allowed_list），容器的 cpuset 限制也体现在这里。
+     * 子进程只能在这些核心上运行，taskset 指定其他核心会直接失败。
+     */
+    private static BitSet allowedCpus() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status)) {
+                    if (!line.startsWith("Cpus_allowed_list:")) continue;
+                    BitSet set = parseCpuList(line.substring("Cpus_allowed_list:".length()).trim());
+                    if (set != null && !set.isEmpty()) return set;
+                }
+            } catch (IOException ignored) {
+                // 回退到处理器数量
+            }
+        }
+        BitSet set = new BitSet();
+        set.set(0, Runtime.getRuntime().availableProcessors());
+        return set;
+    }
+
+    /**
+     * 解析 "0-3,6,8-9" 形式的 CPU 列表，格式错误时返回 null。
+     */
+    static BitSet parseCpuList(String spec) {
+        BitSet set = new BitSet();
+        if (spec == null || spec.trim().isEmpty()) return set;
+        try {
+            for (String part : spec.split(",")) {
+                String range = part.trim();
+                int dash = range.indexOf('-');
+                int from = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+                int to = (dash < 0) ? from : Integer.parseInt(range.substring(dash + 1).trim());
+                if (from < 0 || to < from) return null;
+                set.set(from, to + 1);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return set;
+    }
+
+    static String formatCpuList(BitSet set) {
+        StringBuilder sb = new StringBuilder();
+        for (int from = set.nextSetBit(0); from >= 0; from = set.nextSetBit(from)) {
+            int to = set.nextClearBit(from) - 1;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(from);
+            if (to > from) sb.append('-').append(to);
+            from = to + 1;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import net.kyori.adventure.text.Component;
+import org.linuxfirmware.consolePlus.api.ShellJob;
+import org.linuxfirmware.consolePlus.api.ShellResult;
+import org.linuxfirmware.consolePlus.jfr.ProcessExitEvent;
+import org.linuxfirmware.consolePlus.utils.AnsiLineRenderer;
+import org.linuxfirmware.consolePlus.utils.LineAssembler;
+import org.linuxfirmware.consolePlus.utils.LineMatcher;
+import org.linuxfirmware.consolePlus.utils.LineRing;
+import org.linuxfirmware.consolePlus.utils.OutputFilter;
+import org.linuxfirmware.consolePlus.utils.OutputPublisher;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 一个受管进程的全部运行时状态。除标注 volatile 的字段外，输出相关状态仅在持有 assembler 锁时访问
+ * （输出线程或空闲刷新任务）。
+ */
+class ManagedProcess implements ShellJob {
+    private final ProcessManager manager;
+    int id;
+    Process process;
+    final String command;
+    long startTime;
+    StdinQueue stdin;
+    Charset charset;
+    BufferedWriter logWriter;
+    long logStampSecond = -1;
+    String logStamp;
+    volatile boolean logDirty = false;
+    volatile LineAssembler assembler;
+    // stderr 单独读取时使用，与 assembler 共用一把锁
+    volatile LineAssembler errorAssembler;
+    boolean separateStderr = false;
+    int stdoutRoutes = ProcessManager.ROUTE_ALL;
+    int stderrRoutes = ProcessManager.ROUTE_ALL;
+    Component errorPrefix;
+    String errorLegacyPrefix;
+    // JFR 统计：timing 仅在记录开启的批次中为 true
+    boolean timing = false;
+    long lineCount = 0;
+    int consoleLines = 0;
+    int filteredLines = 0;
+    long consoleNanos = 0;
+    volatile long logChars = 0;
+    // 结果缓存所需的输出捕获，未启用时为 null
+    List<String> capture;
+    int captureLimit;
+    boolean captureOverflow = false;
+    // 输出与退出触发器，未设置时为 null
+    Triggers triggers;
+    // 生效的启动配置（名称与实际设置），未使用时为 null
+    String profile;
+    // 脱离运行（run --detach）时的状态文件，普通进程为 null；detaching 表示插件停用时放手而不结束进程
+    DetachedProcess.State detached;
+    volatile boolean detaching = false;
+    // 进程内文件跟踪任务（脱离运行的进程用它读取 spool），普通进程为 null
+    FileTailer.Tail tail;
+    final AnsiLineRenderer renderer = new AnsiLineRenderer();
+    boolean componentOutput;
+    Component prefix;
+    String legacyPrefix;
+    volatile OutputFilter filter;
+    final LineMatcher.Spans spans = new LineMatcher.Spans();
+    final LineRing scrollback;
+    volatile long outputBytes = 0;
+    volatile long errorBytes = 0;
+    long lastSampleTime = 0;
+    long lastCpuNanos = 0;
+    double lastUsage = 0.0;
+    volatile boolean cancelled = false;
+    volatile boolean stopping = false;
+    boolean processGroup = false;
+
+    private final int streamBuffer;
+    // 由共享跟踪线程驱动的输出源（tail 与重新接管的脱离任务）：订阅者跟不上时丢弃数据而不是阻塞
+    volatile boolean dropWhenFull = false;
+    private volatile OutputPublisher<String> linePublisher;
+    private volatile OutputPublisher<ByteBuffer> chunkPublisher;
+    private final CompletableFuture<ShellResult> exitFuture = new CompletableFuture<>();
+    private boolean finished = false;
+
+    ManagedProcess(ProcessManager manager, String command, int scrollbackLines, int streamBuffer) {
+        this.manager = manager;
+        this.command = command;
+        this.startTime = System.currentTimeMillis();
+        this.scrollback = new LineRing(scrollbackLines);
+        this.streamBuffer = streamBuffer;
+    }
+
+    void updateProcess(Process process, Charset charset, StdinQueue stdin) {
+        this.process = process;
+        this.charset = charset;
+        this.stdin = stdin;
+    }
+
+    void publishLine(String line) {
+        OutputPublisher<String> publisher = linePublisher;
+        if (publisher == null) return;
+        if (dropWhenFull) publisher.offer(line);
+        else publisher.submit(line);
+    }
+
+    void publishChunk(byte[] data, int length) {
+        OutputPublisher<ByteBuffer> publisher = chunkPublisher;
+        // 读缓冲区会被复用，必须复制后再交给订阅者
+        if (publisher != null && publisher.hasSubscribers()) {
+            ByteBuffer chunk = ByteBuffer.wrap(Arrays.copyOf(data, length)).asReadOnlyBuffer();
+            if (dropWhenFull) publisher.offer(chunk);
+            else publisher.submit(chunk);
+        }
+    }
+
+    /**
+     * 关闭输出流发布者，唤醒因背压阻塞的输出线程。
+     */
+    void closeStreams() {
+        OutputPublisher<String> lp = linePublisher;
+        OutputPublisher<ByteBuffer> cp = chunkPublisher;
+        if (lp != null) lp.close();
+        if (cp != null) cp.close();
+    }
+
+    /**
+     * 进程结束时调用一次：关闭发布者并完成退出结果。
+     */
+    synchronized void finish(int exitCode) {
+        if (finished) return;
+        finished = true;
+        closeStreams();
+        ProcessExitEvent event = new ProcessExitEvent();
+        if (event.isEnabled()) {
+            event.id = id;
+            event.pid = (process != null) ? process.pid() : -1;
+            event.commandHash = command.hashCode();
+            event.exitCode = exitCode;
+            event.runTime = System.currentTimeMillis() - startTime;
+            event.outputBytes = outputBytes;
+            event.outputLines = lineCount;
+            event.commit();
+        }
+        exitFuture.complete(new ShellResult(id, exitCode, System.currentTimeMillis() - startTime, outputBytes, errorBytes));
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public CompletableFuture<ShellResult> onExit() {
+        return exitFuture;
+    }
+
+    @Override
+    public synchronized Flow.Publisher<String> lines() {
+        if (linePublisher == null) {
+            linePublisher = new OutputPublisher<>(ForkJoinPool.commonPool(), streamBuffer);
+            if (finished) linePublisher.close();
+        }
+        return linePublisher;
+    }
+
+    @Override
+    public synchronized Flow.Publisher<ByteBuffer> chunks() {
+        if (chunkPublisher == null) {
+            chunkPublisher = new OutputPublisher<>(ForkJoinPool.commonPool(), streamBuffer);
+            if (finished) chunkPublisher.close();
+        }
+        return chunkPublisher;
+    }
+
+    @Override
+    public void writeInput(String line) throws IOException {
+        check(manager.sendInput(id, line));
+    }
+
+    @Override
+    public void writeInput(Path file) throws IOException {
+        check(manager.sendInputFile(id, file));
+    }
+
+    @Override
+    public void closeInput() throws IOException {
+        check(manager.closeInput(id));
+    }
+
+    private void check(StdinQueue.Result result) throws IOException {
+        if (result == StdinQueue.Result.QUEUE_FULL) throw new IOException("stdin queue full");
+        if (result != StdinQueue.Result.QUEUED) throw new IOException("stdin closed");
+    }
+
+    @Override
+    public boolean stop() {
+        return manager.stopProcess(id);
+    }
+}
@@ -0,0 +1,40 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+import org.linuxfirmware.consolePlus.I18n;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * 进程管理所需的宿主能力：配置、日志、数据目录、消息与调度。
+ * 插件本身即为宿主；压力测试工具使用不依赖服务器的替身实现。
+ */
+public interface ProcessHost {
+
+    FileConfiguration getConfig();
+
+    Logger getLogger();
+
+    File getDataFolder();
+
+    I18n getI18n();
+
+    ConsoleCommandSender getConsoleSender();
+
+    void runAsync(Runnable task);
+
+    /**
+     * 在主线程上延迟执行。
+     */
+    void runLater(Runnable task, long delayTicks);
+
+    BukkitTask runTimerAsync(Runnable task, long delayTicks, long periodTicks);
+
+    /**
+     * 以控制台身份执行服务器命令，必须在主线程调用。
+     */
+    void dispatchCommand(String command);
+}
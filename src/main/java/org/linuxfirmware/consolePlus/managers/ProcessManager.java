@@ -1,34 +1,80 @@
 package org.linuxfirmware.consolePlus.managers;
 
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.bukkit.command.ConsoleCommandSender;
-import org.linuxfirmware.consolePlus.ConsolePlus;
-import org.linuxfirmware.consolePlus.utils.AnsiConverter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.scheduler.BukkitTask;
+import org.linuxfirmware.consolePlus.api.CachedResult;
+import org.linuxfirmware.consolePlus.api.ConsolePlusService;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+import org.linuxfirmware.consolePlus.api.ShellJob;
+import org.linuxfirmware.consolePlus.jfr.ConsoleFlushEvent;
+import org.linuxfirmware.consolePlus.jfr.LogWriteEvent;
+import org.linuxfirmware.consolePlus.jfr.OutputBatchEvent;
+import org.linuxfirmware.consolePlus.jfr.ProcessSpawnEvent;
+import org.linuxfirmware.consolePlus.jfr.ProcessStopEvent;
+import org.linuxfirmware.consolePlus.utils.AnsiLineRenderer;
+import org.linuxfirmware.consolePlus.utils.BufferPool;
+import org.linuxfirmware.consolePlus.utils.LineAssembler;
+import org.linuxfirmware.consolePlus.utils.LineMatcher;
+import org.linuxfirmware.consolePlus.utils.OutputFilter;
+import org.linuxfirmware.consolePlus.utils.ShellUtils;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class ProcessManager {
-    private final ConsolePlus plugin;
+public class ProcessManager implements ConsolePlusService {
+    // 输出行的去向（stderr 单独读取时按流配置）
+    static final int ROUTE_CONSOLE = 1;
+    static final int ROUTE_LOG = 2;
+    static final int ROUTE_SCROLLBACK = 4;
+    static final int ROUTE_ALL = ROUTE_CONSOLE | ROUTE_LOG | ROUTE_SCROLLBACK;
+    // 分流读取时两个管道都没有数据的最长休眠时间
+    private static final long SPLIT_POLL_MAX_MILLIS = 20;
+    private final ProcessHost plugin;
     private final EnvironmentManager envManager;
     private final Map<Integer, ManagedProcess> activeProcesses = new ConcurrentHashMap<>();
     private final boolean isWindows;
+    private final ProcessTerminator terminator = new ProcessTerminator(ForkJoinPool.commonPool());
+    // 读缓冲与行缓冲尺寸不同，分开复用
+    private final BufferPool readBufferPool = new BufferPool(16);
+    private final BufferPool lineBufferPool = new BufferPool(16);
+    private static final DateTimeFormatter LOG_TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private BukkitTask idleFlusher;
+    private final FileTailer tailer;
+    private final ResultCache resultCache;
     private final Map<Long, Long> windowsStatsCache = new HashMap<>();
+    // 触发器排入主线程、尚未执行的服务器命令数
+    private final AtomicInteger pendingDispatches = new AtomicInteger();
     private long lastStatsUpdate = 0;
 
-    public ProcessManager(ConsolePlus plugin, EnvironmentManager envManager) {
+    public ProcessManager(ProcessHost plugin, EnvironmentManager envManager) {
         this.plugin = plugin;
         this.envManager = envManager;
         this.isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+        this.resultCache = new ResultCache(plugin.getConfig().getInt("result-cache.max-entries", 128));
+        this.tailer = new FileTailer(plugin.getLogger());
     }
 
     private synchronized int reserveNextId(ManagedProcess mp) {
@@ -57,33 +103,211 @@ public class ProcessManager {
         return plugin.getI18n().get(key, map);
     }
 
-    public void executeAsync(String cmd, ConsoleCommandSender sender, String workDir, String envName, Integer customTimeout) {
+    private void notify(ConsoleCommandSender sender, String message) {
+        if (sender != null) sender.sendMessage(message);
+    }
+
+    @Override
+    public ShellJob start(RunOptions options) {
+        validate(options);
+        return executeAsync(options, options.isConsoleOutput() ? plugin.getConsoleSender() : null);
+    }
+
+    @Override
+    public CompletableFuture<CachedResult> startCached(RunOptions options, int ttlSeconds) {
+        validate(options);
+        return runCached(options, ttlSeconds, options.isConsoleOutput() ? plugin.getConsoleSender() : null);
+    }
+
+    private void validate(RunOptions options) {
+        String workDir = options.getWorkDir();
+        if (workDir != null && !new File(workDir).isDirectory()) {
+            throw new IllegalArgumentException(msg("invalid-workdir", "dir", workDir));
+        }
+        if (!envManager.exists(options.getEnvName())) {
+            throw new IllegalArgumentException(msg("env-unknown", "name", options.getEnvName()));
+        }
+        if (options.getStdinFile() != null && !Files.isRegularFile(options.getStdinFile())) {
+            throw new IllegalArgumentException(msg("file-not-found", "file", options.getStdinFile()));
+        }
+        launchProfile(options);
+        triggers(options);
+        filter(options);
+    }
+
+    /**
+     * 编译本次运行的过滤规则，没有规则时返回 null。正则非法时抛出 IllegalArgumentException（已本地化）。
+     */
+    private OutputFilter filter(RunOptions options) {
+        try {
+            return OutputFilter.compile(options.getGrep(), options.getExclude(), options.getHighlight());
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException(msg("invalid-pattern", "error", e.getDescription()));
+        }
+    }
+
+    /**
+     * 配置中定义的启动配置名称。
+     */
+    public Set<String> getProfileNames() {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("launch-profiles.profiles");
+        return (section != null) ? section.getKeys(false) : Collections.emptySet();
+    }
+
+    /**
+     * 配置中定义的触发器组名称。
+     */
+    public Set<String> getTriggerSetNames() {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("triggers.sets");
+        return (section != null) ? section.getKeys(false) : Collections.emptySet();
+    }
+
+    /**
+     * 本次运行指定的触发器组，未指定时取环境对应的组；没有任何触发器时返回 null。
+     * 定义无效时抛出 IllegalArgumentException（已本地化）。
+     */
+    private Triggers triggers(RunOptions options) {
+        List<String> names = options.getTriggers();
+        if (names == null) names = plugin.getConfig().getStringList("triggers.environments." + options.getEnvName());
+        if (names.isEmpty()) return null;
+        try {
+            Triggers triggers = Triggers.load(plugin.getConfig().getConfigurationSection("triggers.sets"), names,
+                options.getEnvName(), options.getWorkDir(), plugin.getConfig().getLong("triggers.throttle-ms", 1000));
+            // 提前编译一次，校验正则与触发器数量
+            OutputFilter.withTriggers(null, triggers.patterns(), triggers.regexMask());
+            return triggers;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(msg("trigger-invalid", "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 依次取本次运行指定的配置、环境对应的配置和默认配置；都未设置或在 Windows 上时返回 null。
+     * 配置不存在或数值无效时抛出 IllegalArgumentException（已本地化）。
+     */
+    private LaunchProfile launchProfile(RunOptions options) {
+        String name = options.getProfile();
+        if (name == null) name = plugin.getConfig().getString("launch-profiles.environments." + options.getEnvName());
+        if (name == null) name = plugin.getConfig().getString("launch-profiles.default", "");
+        if (name.isEmpty() || name.equalsIgnoreCase("none") || isWindows) return null;
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("launch-profiles.profiles." + name);
+        if (section == null) throw new IllegalArgumentException(msg("profile-not-found", "name", name));
+        try {
+            return LaunchProfile.parse(name, section, plugin.getConfig().getString("launch-profiles.reserved-cores", "0"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(msg("profile-invalid", "name", name, "error", e.getMessage()));
+        }
+    }
+
+    @Override
+    public ShellJob getJob(int id) {
+        return activeProcesses.get(id);
+    }
+
+    /**
+     * 启动进程。sender 为 null 时不向控制台输出任何内容。工作目录无效时返回 null。
+     */
+    public ShellJob executeAsync(RunOptions options, ConsoleCommandSender sender) {
+        return execute(options, sender, 0);
+    }
+
+    /**
+     * 按结果缓存执行：ttl 内的相同请求（命令、环境、工作目录）直接返回缓存的输出，
+     * 执行中的相同请求共享同一个进程。只有实际启动进程的调用会在控制台实时输出。
+     */
+    public CompletableFuture<CachedResult> runCached(RunOptions options, int ttlSeconds, ConsoleCommandSender sender) {
+        return resultCache.get(ResultCache.key(options), ttlSeconds * 1000L, () -> {
+            int limit = plugin.getConfig().getInt("result-cache.max-output-lines", 1000);
+            ManagedProcess mp = execute(options, sender, limit);
+            if (mp == null) {
+                return CompletableFuture.completedFuture(new CachedResult(-1, new ArrayList<>(), System.currentTimeMillis(), false, CachedResult.Source.EXECUTED));
+            }
+            return mp.onExit().thenApply(r -> new CachedResult(r.getExitCode(), mp.capture, System.currentTimeMillis(),
+                !mp.captureOverflow && !mp.cancelled && !mp.stopping && r.getExitCode() >= 0, CachedResult.Source.EXECUTED));
+        });
+    }
+
+    /**
+     * 在控制台重放共享或缓存的结果，仅应用过滤规则（不做高亮）。
+     */
+    public void replayCached(CachedResult result, OutputFilter filter, ConsoleCommandSender sender) {
+        if (sender == null || result.getSource() == CachedResult.Source.EXECUTED) return;
+        long age = (System.currentTimeMillis() - result.getCompletedAt()) / 1000;
+        String key = (result.getSource() == CachedResult.Source.SHARED) ? "cache-shared" : "cache-hit";
+        notify(sender, msg("prefix") + msg(key, "age", age, "code", result.getExitCode()));
+        String prefix = plugin.getConfig().getString("id-prefix-color", "§8") + "[cache]§r ";
+        LineMatcher.Spans spans = new LineMatcher.Spans();
+        for (String line : result.getLines()) {
+            if (filter == null || filter.test(line, spans)) sender.sendMessage(prefix + line);
+        }
+    }
+
+    /**
+     * 依次为：条目数、命中、共享执行、未命中、淘汰次数。
+     */
+    public long[] getCacheStats() {
+        return resultCache.stats();
+    }
+
+    public void clearCache() {
+        resultCache.clear();
+    }
+
+    private ManagedProcess execute(RunOptions options, ConsoleCommandSender sender, int captureLines) {
+        String cmd = options.getCommand();
+        String workDir = options.getWorkDir();
+        String envName = options.getEnvName();
+        Integer customTimeout = options.getTimeout();
         if (workDir != null) {
             File dir = new File(workDir);
             if (!dir.exists() || !dir.isDirectory()) {
-                sender.sendMessage(msg("error-prefix") + msg("process-error", "id", -1, "error", msg("invalid-workdir", "dir", workDir)));
-                return;
+                notify(sender, msg("error-prefix") + msg("process-error", "id", -1, "error", msg("invalid-workdir", "dir", workDir)));
+                return null;
             }
         }
+        if (options.getStdinFile() != null && !Files.isRegularFile(options.getStdinFile())) {
+            notify(sender, msg("error-prefix") + msg("file-not-found", "file", options.getStdinFile()));
+            return null;
+        }
+        LaunchProfile profile;
+        Triggers triggers;
+        OutputFilter filter;
+        try {
+            profile = launchProfile(options);
+            triggers = triggers(options);
+            filter = filter(options);
+        } catch (IllegalArgumentException e) {
+            notify(sender, msg("error-prefix") + e.getMessage());
+            return null;
+        }
+        // 结果缓存需要捕获输出，此时忽略 detach
+        boolean detach = options.isDetach() && captureLines == 0;
+        if (detach && (isWindows || ProcessTerminator.groupLauncher() == null)) {
+            notify(sender, msg("error-prefix") + msg("detach-unsupported"));
+            return null;
+        }
 
-        ManagedProcess mp = new ManagedProcess(null, cmd, Charset.defaultCharset());
-        int id = reserveNextId(mp);
-
-        sender.sendMessage(msg("prefix") + msg("process-starting", "id", id));
-        
-        if (plugin.getConfig().getBoolean("enable-process-logging", true)) {
-            try {
-                File logDir = new File(plugin.getDataFolder(), plugin.getConfig().getString("process-log-dir", "logs"));
-                if (!logDir.exists()) logDir.mkdirs();
-                String timestamp = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
-                File logFile = new File(logDir, "process-" + id + "-" + timestamp + ".log");
-                mp.logWriter = new BufferedWriter(new OutputStreamWriter(new java.io.FileOutputStream(logFile), StandardCharsets.UTF_8));
-                mp.logWriter.write(msg("log-header-cmd") + cmd + "\n" + msg("log-header-start") + new java.util.Date() + "\n------------------------------------------\n");
-                mp.logWriter.flush();
-            } catch (IOException e) { plugin.getLogger().warning("Could not create log file for process " + id + ": " + e.getMessage()); }
+        ManagedProcess mp = register(options, filter, sender);
+        if (profile != null) mp.profile = profile.describe();
+        if (triggers != null) {
+            mp.triggers = triggers;
+            // 输出触发器与过滤规则共用同一个匹配器，每行只扫描一次
+            if (!triggers.lineTriggers.isEmpty()) mp.filter = OutputFilter.withTriggers(mp.filter, triggers.patterns(), triggers.regexMask());
+            mp.onExit().thenAccept(result -> exited(mp, result.getExitCode(), sender));
+        }
+        int id = mp.id;
+        if (captureLines > 0) {
+            mp.capture = new ArrayList<>();
+            mp.captureLimit = captureLines;
+        }
+        Boolean separate = options.getSeparateStderr();
+        mp.separateStderr = (separate != null) ? separate : plugin.getConfig().getBoolean("stderr.separate", false);
+        if (mp.separateStderr) {
+            mp.stdoutRoutes = routes("stderr.stdout-routes");
+            mp.stderrRoutes = routes("stderr.stderr-routes");
         }
 
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+        plugin.runAsync(() -> {
             Charset charset = getNativeCharset();
             ProcessBuilder pb = new ProcessBuilder();
             if (workDir != null) {
@@ -111,6 +335,7 @@ public class ProcessManager {
                     envCommands.add(trimmed);
                 }
             }
+            pb.environment().putAll(options.getVariables());
             
             String finalCmd = cmd;
             if (!envCommands.isEmpty()) {
@@ -118,186 +343,774 @@ public class ProcessManager {
                 finalCmd = String.join(joiner, envCommands) + joiner + cmd;
             }
             
-            if (isWindows) pb.command("cmd.exe", "/c", finalCmd);
-            else pb.command("sh", "-c", finalCmd);
-            pb.redirectErrorStream(true);
+            if (detach) {
+                startDetached(mp, options, pb, profile, finalCmd, charset, sender);
+                return;
+            }
+
+            // 在独立进程组中启动，停止时可以向整棵进程树发送信号
+            String groupLauncher = plugin.getConfig().getBoolean("process-groups", true) ? ProcessTerminator.groupLauncher() : null;
+            if (isWindows) {
+                pb.command("cmd.exe", "/c", finalCmd);
+            } else {
+                // setsid [taskset] [ionice] [nice] sh -c ...，优先级与亲和性由整棵进程树继承
+                List<String> command = new ArrayList<>();
+                if (groupLauncher != null) command.add(groupLauncher);
+                if (profile != null) command.addAll(profile.prefix());
+                Collections.addAll(command, "sh", "-c", finalCmd);
+                pb.command(command);
+            }
+            mp.processGroup = groupLauncher != null;
+            pb.redirectErrorStream(!mp.separateStderr);
+            if (options.getStdinFile() != null) pb.redirectInput(options.getStdinFile().toFile());
             
-            int maxLineLength = plugin.getConfig().getInt("max-line-length", 16384);
             int bufferSize = plugin.getConfig().getInt("read-buffer-size", 8192);
             int timeout = (customTimeout != null) ? customTimeout : plugin.getConfig().getInt("default-timeout", 0);
-            String idPrefix = plugin.getConfig().getString("id-prefix-color", "§8");
 
+            Thread thread = Thread.currentThread();
+            String threadName = thread.getName();
+            thread.setName("ConsolePlus-pump-" + id);
+            int exitCode = -1;
             try {
                 if (mp.cancelled) return;
+                ProcessSpawnEvent spawn = new ProcessSpawnEvent();
+                spawn.begin();
                 Process process = pb.start();
+                spawn.end();
+                if (spawn.shouldCommit()) {
+                    spawn.id = id;
+                    spawn.pid = process.pid();
+                    spawn.commandHash = cmd.hashCode();
+                    spawn.env = envName;
+                    spawn.workDir = (pb.directory() != null) ? pb.directory().getPath() : null;
+                    spawn.commit();
+                }
                 if (mp.cancelled) {
                     process.destroyForcibly();
                     return;
                 }
-                mp.updateProcess(process, charset);
+                StdinQueue stdin = new StdinQueue(process.getOutputStream(), plugin.getConfig().getInt("stdin-queue-size", 64),
+                    plugin::runAsync, "ConsolePlus-stdin-" + id);
+                // stdin 已重定向到文件时管道为空流，队列从一开始就是关闭状态
+                if (options.getStdinFile() != null) stdin.shutdown();
+                mp.updateProcess(process, charset, stdin);
                 
                 if (timeout > 0) {
-                    plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                        if (process.isAlive()) {
-                            sender.sendMessage(msg("error-prefix") + msg("process-timeout", "id", id));
-                            process.destroyForcibly();
-                            activeProcesses.remove(id);
+                    plugin.runLater(() -> {
+                        if (process.isAlive() && !mp.stopping) {
+                            notify(sender, msg("error-prefix") + msg("process-timeout", "id", id));
+                            terminate(mp, stopGraceMillis(), "timeout");
                         }
                     }, timeout * 20L);
                 }
 
-                CharsetDecoder decoder = charset.newDecoder()
-                    .onMalformedInput(CodingErrorAction.REPLACE)
-                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
-                ByteBuffer dataBuffer = ByteBuffer.allocate(maxLineLength + bufferSize);
-
-                try (InputStream is = process.getInputStream()) {
-                    byte[] rawBuffer = new byte[bufferSize];
-                    int bytesRead;
-                    int ansiState = 0;
-                    StringBuilder ansiCode = new StringBuilder();
-                    boolean colorEnabled = plugin.getConfig().getBoolean("enable-color", true);
-                    
-                    while ((bytesRead = is.read(rawBuffer)) != -1) {
-                        for (int k = 0; k < bytesRead; k++) {
-                            int ub = rawBuffer[k] & 0xFF;
-                            
-                            // 忽略回车符，仅在换行符时刷新缓冲区
-                            if (ub == 13) continue;
-                            if (ub == 10) {
-                                flushBuffer(dataBuffer, decoder, sender, idPrefix, id, false);
-                                continue;
-                            }
-
-                            if (ansiState == 0) {
-                                if (ub == 27) { ansiState = 1; continue; }
-                            } else if (ansiState == 1) {
-                                if (ub == '[') { ansiState = 2; continue; }
-                                if (ub == '(') { ansiState = 3; continue; }
-                                else { ansiState = 0; continue; }
-                            } else if (ansiState == 2) {
-                                if (ub >= 0x30 && ub <= 0x3F) { ansiCode.append((char) ub); continue; }
-                                else if (ub >= 0x40 && ub <= 0x7E) {
-                                    if (ub == 'm' && colorEnabled) {
-                                        for (String code : ansiCode.toString().split(";")) {
-                                            try {
-                                                String mc = AnsiConverter.toMinecraft(Integer.parseInt(code));
-                                                if (mc != null) dataBuffer.put(mc.getBytes(charset));
-                                            } catch (NumberFormatException ignored) {}
-                                        }
-                                    }
-                                    ansiCode.setLength(0); ansiState = 0; continue;
-                                }
-                                ansiState = 0; continue;
-                            } else if (ansiState == 3) { ansiState = 0; continue; }
-                            
-                            // 过滤不可见控制字符/二进制输出
-                            if (ub < 32 && ub != 9) continue;
-                            
-                            dataBuffer.put((byte) ub);
-                            
-                            if (dataBuffer.position() > maxLineLength) {
-                                flushBuffer(dataBuffer, decoder, sender, idPrefix, id, false);
-                                sender.sendMessage(idPrefix + "[" + id + "]§r §7" + msg("line-truncated"));
-                            }
-                        }
-                        
-                        if (is.available() == 0 && dataBuffer.position() > 0) {
-                            flushBuffer(dataBuffer, decoder, sender, idPrefix, id, false);
+                if (mp.separateStderr) {
+                    pumpSplit(mp, process, charset, sender, bufferSize);
+                } else {
+                    LineAssembler assembler = newAssembler(mp, charset, sender, false, new ReentrantLock());
+                    byte[] rawBuffer = readBufferPool.acquire(bufferSize);
+                    try (InputStream is = process.getInputStream()) {
+                        int bytesRead;
+                        while ((bytesRead = is.read(rawBuffer)) != -1) {
+                            mp.outputBytes += bytesRead;
+                            mp.publishChunk(rawBuffer, bytesRead);
+                            feed(mp, assembler, rawBuffer, bytesRead);
                         }
+                        assembler.finish();
+                    } catch (IOException e) {
+                        plugin.getLogger().warning("Error reading from process output: " + e.getMessage());
+                    } finally {
+                        mp.assembler = null;
+                        assembler.release();
+                        readBufferPool.release(rawBuffer);
                     }
-
-                    if (dataBuffer.position() > 0) {
-                        flushBuffer(dataBuffer, decoder, sender, idPrefix, id, true);
-                    }
-                } catch (IOException e) {
-                    plugin.getLogger().warning("Error reading from process output: " + e.getMessage());
                 }
                 try {
-                    int exitCode = process.waitFor();
+                    exitCode = process.waitFor();
                     if (activeProcesses.containsKey(id)) {
-                        sender.sendMessage(msg("warn-prefix") + msg("process-exited", "id", id, "code", exitCode));
+                        notify(sender, msg("warn-prefix") + msg("process-exited", "id", id, "code", exitCode));
                         activeProcesses.remove(id);
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     if (activeProcesses.containsKey(id)) {
-                        sender.sendMessage(msg("error-prefix") + msg("process-error", "id", id, "error", msg("process-stopped", "id", id)));
+                        notify(sender, msg("error-prefix") + msg("process-error", "id", id, "error", msg("process-stopped", "id", id)));
                         activeProcesses.remove(id);
                     }
                 }
             } catch (Exception e) {
                 if (activeProcesses.containsKey(id)) {
-                    sender.sendMessage(msg("error-prefix") + msg("process-error", "id", id, "error", e.getMessage()));
+                    notify(sender, msg("error-prefix") + msg("process-error", "id", id, "error", e.getMessage()));
                     activeProcesses.remove(id);
                 }
             } finally {
-                if (mp.writer != null) try { mp.writer.close(); } catch (IOException ignored) {}
-                if (mp.logWriter != null) {
-                    try {
-                        mp.logWriter.write("------------------------------------------\n" + msg("log-header-end") + new java.util.Date() + "\n");
-                        mp.logWriter.close();
-                    } catch (IOException ignored) {}
+                mp.finish(exitCode);
+                if (mp.stdin != null) mp.stdin.shutdown();
+                closeLog(mp);
+                thread.setName(threadName);
+            }
+        });
+        return mp;
+    }
+
+    /**
+     * 在进程内跟踪文件（类似 tail [-f]），输出走与进程相同的过滤、高亮、回滚和日志流程。
+     * 先输出最后 lines 行；follow 为 false 时输出完即结束。文件不存在时返回 null。
+     */
+    public ShellJob tail(File file, int lines, boolean follow, OutputFilter filter, ConsoleCommandSender sender) {
+        if (!file.isFile()) {
+            notify(sender, msg("error-prefix") + msg("file-not-found", "file", file.getPath()));
+            return null;
+        }
+        String command = "tail " + (follow ? "-f " : "") + "-n " + lines + " " + file.getPath();
+        ManagedProcess mp = register(new RunOptions(command).label(file.getName()), filter, sender);
+        mp.dropWhenFull = true;
+        Charset charset;
+        try {
+            charset = Charset.forName(plugin.getConfig().getString("tail-charset", "UTF-8"));
+        } catch (IllegalArgumentException e) {
+            charset = StandardCharsets.UTF_8;
+        }
+        LineAssembler assembler = newAssembler(mp, charset, sender, false, new ReentrantLock());
+        mp.tail = new FileTailer.Tail(file.toPath(), lines, follow, new FileTailer.Listener() {
+            @Override
+            public void data(byte[] data, int length) {
+                mp.outputBytes += length;
+                mp.publishChunk(data, length);
+                feed(mp, assembler, data, length);
+            }
+
+            @Override
+            public void closed() {
+                assembler.finish();
+                mp.assembler = null;
+                assembler.release();
+                if (activeProcesses.remove(mp.id, mp) && !mp.cancelled) {
+                    ProcessManager.this.notify(sender, msg("warn-prefix") + msg("process-exited", "id", mp.id, "code", 0));
                 }
+                mp.finish(0);
+                closeLog(mp);
             }
         });
+        tailer.add(mp.tail);
+        return mp;
     }
 
-    private void flushBuffer(ByteBuffer buffer, CharsetDecoder decoder, ConsoleCommandSender sender, String idPrefix, int id, boolean endOfInput) {
-        buffer.flip();
-        CharBuffer chars = CharBuffer.allocate(buffer.remaining() + (endOfInput ? 10 : 0));
-        CoderResult result = decoder.decode(buffer, chars, endOfInput);
-        
-        if (endOfInput && result.isUnderflow()) {
-            decoder.flush(chars);
-        }
-        
-        chars.flip();
-        String line = chars.toString();
-        sendFormattedMessage(sender, idPrefix, id, line);
-        
-        if (buffer.hasRemaining()) {
-            buffer.compact();
-        } else {
-            buffer.clear();
+    /**
+     * 以脱离模式启动：setsid 建立新会话，输出追加到 spool 文件，退出码由包装 shell 写入 exit 文件。
+     * 状态文件写好后按普通的文件跟踪读取 spool。
+     */
+    private void startDetached(ManagedProcess mp, RunOptions options, ProcessBuilder pb, LaunchProfile profile, String finalCmd,
+                               Charset charset, ConsoleCommandSender sender) {
+        File dir = new File(plugin.getDataFolder(), "detached");
+        if (!dir.exists()) dir.mkdirs();
+        DetachedProcess.State state = new DetachedProcess.State(new File(dir, "job-" + mp.startTime + "-" + mp.id + ".yml"));
+        List<String> command = new ArrayList<>();
+        command.add(ProcessTerminator.groupLauncher());
+        if (profile != null) command.addAll(profile.prefix());
+        Collections.addAll(command, "sh", "-c", DetachedProcess.WRAPPER, "sh", finalCmd, state.exitFile().getPath());
+        pb.command(command);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.appendTo(state.spool()));
+        pb.redirectInput((options.getStdinFile() != null) ? options.getStdinFile().toFile() : new File("/dev/null"));
+        try {
+            if (mp.cancelled) return;
+            Process process = pb.start();
+            state.pid = process.pid();
+            state.startTicks = DetachedProcess.startTicks(process.pid());
+            state.startedAt = mp.startTime;
+            state.command = mp.command;
+            state.label = options.getLabel();
+            state.env = options.getEnvName();
+            state.workDir = options.getWorkDir();
+            state.save();
+            attach(mp, state, new DetachedProcess(process.toHandle(), state.exitFile()), charset, sender);
+        } catch (IOException e) {
+            if (activeProcesses.remove(mp.id, mp)) {
+                notify(sender, msg("error-prefix") + msg("process-error", "id", mp.id, "error", e.getMessage()));
+            }
+            mp.finish(-1);
+            closeLog(mp);
+            state.delete();
+            return;
+        }
+        Integer customTimeout = options.getTimeout();
+        int timeout = (customTimeout != null) ? customTimeout : plugin.getConfig().getInt("default-timeout", 0);
+        if (timeout > 0) {
+            plugin.runLater(() -> {
+                if (mp.process.isAlive() && !mp.stopping && activeProcesses.get(mp.id) == mp) {
+                    notify(sender, msg("error-prefix") + msg("process-timeout", "id", mp.id));
+                    terminate(mp, stopGraceMillis(), "timeout");
+                }
+            }, timeout * 20L);
         }
     }
 
-    private void sendFormattedMessage(ConsoleCommandSender sender, String prefixColor, int id, String message) {
-        // 允许发送空行，确保 echo 等命令的空结果可见
-        sender.sendMessage(prefixColor + "[" + id + "]§r " + message);
-        ManagedProcess mp = activeProcesses.get(id);
-        if (mp != null && mp.logWriter != null) {
+    /**
+     * 插件启用时重新接管 detached 目录中记录的进程。仍在运行（PID 与启动时间都一致）的进程从记录的
+     * spool 位置继续跟踪；停用期间已结束的进程输出剩余内容后按 exit 文件报告退出码。
+     */
+    public void reattachDetached(ConsoleCommandSender sender) {
+        File[] files = new File(plugin.getDataFolder(), "detached").listFiles((d, name) -> name.endsWith(".yml"));
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            DetachedProcess.State state = DetachedProcess.State.load(file);
+            DetachedProcess process = isWindows ? null : DetachedProcess.find(state);
+            ManagedProcess mp = register(new RunOptions(state.command).label(state.label).env(state.env).workDir(state.workDir), null, sender);
+            mp.startTime = state.startedAt;
+            notify(sender, msg("prefix") + msg((process != null) ? "detached-reattached" : "detached-ended", "id", mp.id, "pid", state.pid));
+            attach(mp, state, process, getNativeCharset(), sender);
+        }
+    }
+
+    /**
+     * 从 state.offset 开始跟踪 spool 文件。进程为 null（已结束）时读完现有内容即结束。
+     */
+    private void attach(ManagedProcess mp, DetachedProcess.State state, DetachedProcess process, Charset charset, ConsoleCommandSender sender) {
+        mp.detached = state;
+        mp.dropWhenFull = true;
+        mp.processGroup = true;
+        if (process != null) mp.updateProcess(process, charset, null);
+        LineAssembler assembler = newAssembler(mp, charset, sender, false, new ReentrantLock());
+        FileTailer.Tail tail = new FileTailer.Tail(state.spool().toPath(), state.offset, true, new FileTailer.Listener() {
+            @Override
+            public void data(byte[] data, int length) {
+                mp.outputBytes += length;
+                mp.publishChunk(data, length);
+                feed(mp, assembler, data, length);
+            }
+
+            @Override
+            public void closed() {
+                assembler.finish();
+                mp.assembler = null;
+                assembler.release();
+                if (mp.detaching) {
+                    // 插件停用：记录读取位置，进程继续运行
+                    state.offset = mp.tail.position();
+                    try {
+                        state.save();
+                    } catch (IOException e) {
+                        plugin.getLogger().warning("Could not save detached job state " + state.file.getName() + ": " + e.getMessage());
+                    }
+                    mp.closeStreams();
+                    closeLog(mp);
+                    return;
+                }
+                int exitCode = DetachedProcess.readExitCode(state.exitFile());
+                if (activeProcesses.remove(mp.id, mp)) {
+                    ProcessManager.this.notify(sender, msg("warn-prefix") + msg("process-exited", "id", mp.id, "code", exitCode));
+                }
+                mp.finish(exitCode);
+                closeLog(mp);
+                state.delete();
+            }
+        });
+        mp.tail = tail;
+        if (process == null) tail.ending = true;
+        else process.onExit().thenRun(() -> tail.ending = true);
+        tailer.add(tail);
+    }
+
+    /**
+     * 登记一个新的输出源（进程或文件跟踪）：分配 ID、订阅 API 流、打开日志并缓存输出前缀。
+     */
+    private ManagedProcess register(RunOptions options, OutputFilter filter, ConsoleCommandSender sender) {
+        String cmd = options.getCommand();
+        ManagedProcess mp = new ManagedProcess(this, cmd, plugin.getConfig().getInt("scrollback-lines", 1000), plugin.getConfig().getInt("api-stream-buffer", 256));
+        mp.filter = filter;
+        // 订阅必须在进程启动前完成，保证不丢失输出
+        if (options.getLineSubscriber() != null) mp.lines().subscribe(options.getLineSubscriber());
+        if (options.getChunkSubscriber() != null) mp.chunks().subscribe(options.getChunkSubscriber());
+        int id = reserveNextId(mp);
+        mp.id = id;
+
+        // 前缀与渲染器按进程缓存，避免逐行重建
+        String idPrefix = plugin.getConfig().getString("id-prefix-color", "§8");
+        mp.componentOutput = !"legacy".equalsIgnoreCase(plugin.getConfig().getString("output-mode", "component"));
+        String tag = (options.getLabel() != null) ? id + ":" + options.getLabel() : String.valueOf(id);
+        mp.legacyPrefix = idPrefix + "[" + tag + "]§r ";
+        mp.prefix = LegacyComponentSerializer.legacySection().deserialize(idPrefix + "[" + tag + "]").append(Component.space());
+        String errorColor = plugin.getConfig().getString("stderr.prefix-color", "§c");
+        mp.errorLegacyPrefix = errorColor + "[" + tag + "]§r ";
+        mp.errorPrefix = LegacyComponentSerializer.legacySection().deserialize(errorColor + "[" + tag + "]").append(Component.space());
+
+        notify(sender, msg("prefix") + msg("process-starting", "id", id));
+        startIdleFlusher();
+
+        if (plugin.getConfig().getBoolean("enable-process-logging", true)) {
             try {
-                String plain = message.replaceAll("(?i)§[0-9a-fk-or]", "");
-                mp.logWriter.write("[" + new java.text.SimpleDateFormat("HH:mm:ss").format(new java.util.Date()) + "] " + plain + "\n");
+                File logDir = new File(plugin.getDataFolder(), plugin.getConfig().getString("process-log-dir", "logs"));
+                if (!logDir.exists()) logDir.mkdirs();
+                String timestamp = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
+                File logFile = new File(logDir, "process-" + id + "-" + timestamp + ".log");
+                mp.logWriter = new BufferedWriter(new OutputStreamWriter(new java.io.FileOutputStream(logFile), StandardCharsets.UTF_8));
+                mp.logWriter.write(msg("log-header-cmd") + cmd + "\n" + msg("log-header-start") + new java.util.Date() + "\n------------------------------------------\n");
                 mp.logWriter.flush();
+            } catch (IOException e) { plugin.getLogger().warning("Could not create log file for process " + id + ": " + e.getMessage()); }
+        }
+        return mp;
+    }
+
+    private LineAssembler newAssembler(ManagedProcess mp, Charset charset, ConsoleCommandSender sender, boolean stderr, ReentrantLock lock) {
+        LineAssembler assembler = new LineAssembler(charset, plugin.getConfig().getInt("max-line-length", 16384),
+            plugin.getConfig().getBoolean("enable-color", true), lineBufferPool, lock,
+            new LineAssembler.Sink() {
+                @Override
+                public void line(CharSequence line) {
+                    deliverLine(sender, mp, line, stderr);
+                }
+
+                @Override
+                public void truncated() {
+                    ProcessManager.this.notify(sender, (stderr ? mp.errorLegacyPrefix : mp.legacyPrefix) + "§7" + msg("line-truncated"));
+                }
+            });
+        if (stderr) mp.errorAssembler = assembler;
+        else mp.assembler = assembler;
+        return assembler;
+    }
+
+    /**
+     * stdout 与 stderr 分开读取：同一个线程轮询两个管道的 available()，都没有数据时逐步退避休眠，
+     * 不为每个进程增加第二个线程。每轮先读 stdout 再读 stderr，因此两个流之间的先后顺序只精确到一轮轮询，
+     * 同一轮中到达的 stderr 行总是排在 stdout 行之后。
+     * 两个 assembler 共用一把锁，因为它们共享进程的渲染器与日志。
+     */
+    private void pumpSplit(ManagedProcess mp, Process process, Charset charset, ConsoleCommandSender sender, int bufferSize) {
+        ReentrantLock lock = new ReentrantLock();
+        LineAssembler[] assemblers = {newAssembler(mp, charset, sender, false, lock), newAssembler(mp, charset, sender, true, lock)};
+        byte[][] buffers = {readBufferPool.acquire(bufferSize), readBufferPool.acquire(bufferSize)};
+        InputStream[] streams = {process.getInputStream(), process.getErrorStream()};
+        int[] available = new int[2];
+        boolean[] open = {true, true};
+        long sleep = 0;
+        // 进程退出后最近一次有数据（或观察到退出）的时刻
+        long quietSince = 0;
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("stderr.exit-linger-ms", 200));
+        try {
+            while (open[0] || open[1]) {
+                long now = System.nanoTime();
+                for (int s = 0; s < 2; s++) {
+                    available[s] = open[s] ? streams[s].available() : 0;
+                }
+                // 退出后，进程组中没有其他成员时管道不再有写入方，阻塞读取到 EOF 是安全的。
+                // 否则后台孙进程可能一直持有某个管道而只写另一个，阻塞读取会让两边互相等待，
+                // 因此仍然只读取已到达的数据，两个管道都安静 stderr.exit-linger-ms 后结束。
+                if (!process.isAlive() && quietSince == 0) {
+                    quietSince = now;
+                    if (mp.processGroup && !ProcessTerminator.groupAlive(process.pid())) {
+                        for (int s = 0; s < 2; s++) {
+                            int n;
+                            while (open[s] && (n = streams[s].read(buffers[s])) != -1) {
+                                mp.outputBytes += n;
+                                if (s == 1) mp.errorBytes += n;
+                                mp.publishChunk(buffers[s], n);
+                                feed(mp, assemblers[s], buffers[s], n);
+                            }
+                            if (open[s]) {
+                                open[s] = false;
+                                assemblers[s].finish();
+                            }
+                        }
+                        continue;
+                    }
+                }
+                boolean idle = true;
+                for (int s = 0; s < 2; s++) {
+                    if (available[s] == 0) continue;
+                    int n = streams[s].read(buffers[s], 0, Math.min(available[s], buffers[s].length));
+                    if (n < 0) {
+                        open[s] = false;
+                        assemblers[s].finish();
+                        continue;
+                    }
+                    idle = false;
+                    mp.outputBytes += n;
+                    if (s == 1) mp.errorBytes += n;
+                    mp.publishChunk(buffers[s], n);
+                    feed(mp, assemblers[s], buffers[s], n);
+                }
+                if (!idle && quietSince != 0) quietSince = now;
+                if (idle && quietSince != 0 && now - quietSince >= lingerNanos) {
+                    for (int s = 0; s < 2; s++) {
+                        if (!open[s]) continue;
+                        open[s] = false;
+                        assemblers[s].finish();
+                    }
+                } else if (idle) {
+                    sleep = Math.min(Math.max(1, sleep * 2), SPLIT_POLL_MAX_MILLIS);
+                    Thread.sleep(sleep);
+                } else {
+                    sleep = 0;
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Error reading from process output: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            mp.assembler = null;
+            mp.errorAssembler = null;
+            for (int s = 0; s < 2; s++) {
+                assemblers[s].release();
+                readBufferPool.release(buffers[s]);
+                try {
+                    streams[s].close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private int routes(String path) {
+        List<String> names = plugin.getConfig().getStringList(path);
+        if (names.isEmpty()) return ROUTE_ALL;
+        int routes = 0;
+        for (String name : names) {
+            switch (name.toLowerCase()) {
+                case "console": routes |= ROUTE_CONSOLE; break;
+                case "log": routes |= ROUTE_LOG; break;
+                case "scrollback": routes |= ROUTE_SCROLLBACK; break;
+                default: plugin.getLogger().warning("Unknown output route in " + path + ": " + name);
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * 将一批输出交给 assembler。JFR 记录了批次事件时才统计解码与控制台发送耗时，否则只多一次 isEnabled 判断。
+     */
+    private void feed(ManagedProcess mp, LineAssembler assembler, byte[] data, int length) {
+        OutputBatchEvent batch = new OutputBatchEvent();
+        ConsoleFlushEvent flush = new ConsoleFlushEvent();
+        if (!batch.isEnabled() && !flush.isEnabled()) {
+            assembler.feed(data, length);
+            return;
+        }
+        long lines = mp.lineCount;
+        long decode = assembler.decodeNanos();
+        int sent = mp.consoleLines;
+        int filtered = mp.filteredLines;
+        long sendNanos = mp.consoleNanos;
+        mp.timing = true;
+        assembler.setTiming(true);
+        batch.begin();
+        flush.begin();
+        try {
+            assembler.feed(data, length);
+        } finally {
+            assembler.setTiming(false);
+            mp.timing = false;
+        }
+        batch.end();
+        flush.end();
+        if (batch.shouldCommit()) {
+            batch.id = mp.id;
+            batch.bytes = length;
+            batch.lines = (int) (mp.lineCount - lines);
+            batch.decodeNanos = assembler.decodeNanos() - decode;
+            batch.commit();
+        }
+        if (flush.shouldCommit() && mp.consoleLines + mp.filteredLines > sent + filtered) {
+            flush.id = mp.id;
+            flush.lines = mp.consoleLines - sent;
+            flush.filtered = mp.filteredLines - filtered;
+            flush.sendNanos = mp.consoleNanos - sendNanos;
+            flush.commit();
+        }
+    }
+
+    private void closeLog(ManagedProcess mp) {
+        if (mp.logWriter != null) {
+            try {
+                mp.logWriter.write("------------------------------------------\n" + msg("log-header-end") + new java.util.Date() + "\n");
+                mp.logWriter.close();
             } catch (IOException ignored) {}
         }
     }
 
-    public boolean stopProcess(int id) {
-        ManagedProcess mp = activeProcesses.remove(id);
-        if (mp != null) {
-            mp.cancelled = true;
-            if (mp.process != null) {
-                mp.process.toHandle().descendants().forEach(ProcessHandle::destroyForcibly);
-                mp.process.destroyForcibly();
+    /**
+     * 在 dirSpec 匹配的每个工作目录中执行同一命令，最多同时运行 parallelism 个；输出以目录名标记，全部结束后输出汇总。
+     * 目录展开需要遍历文件系统，在异步线程中进行。
+     */
+    public void runAll(String dirSpec, RunOptions template, int parallelism, ConsoleCommandSender sender) {
+        plugin.runAsync(() -> {
+            List<File> dirs;
+            try {
+                dirs = ShellUtils.resolveDirectories(dirSpec);
+            } catch (IOException e) {
+                notify(sender, msg("error-prefix") + e.getMessage());
+                return;
+            }
+            if (dirs.isEmpty()) {
+                notify(sender, msg("error-prefix") + msg("runall-no-dirs", "dirs", dirSpec));
+                return;
+            }
+            new FanOutRun(plugin, this, dirs, template, parallelism, sender).start();
+        });
+    }
+
+    private void deliverLine(ConsoleCommandSender sender, ManagedProcess mp, CharSequence line, boolean stderr) {
+        // 单次扫描同时得到样式片段与纯文本，控制台与日志共用
+        AnsiLineRenderer renderer = mp.renderer;
+        renderer.scan(line);
+        OutputFilter filter = mp.filter;
+        Triggers triggers = mp.triggers;
+        // 未通过过滤的行跳过控制台格式化，但仍写入日志与回滚缓冲
+        mp.lineCount++;
+        int routes = stderr ? mp.stderrRoutes : mp.stdoutRoutes;
+        boolean toConsole = sender != null && (routes & ROUTE_CONSOLE) != 0;
+        // 过滤与触发器共用一次扫描；不输出到控制台且没有触发器时不扫描
+        long found = (filter != null && (toConsole || triggers != null)) ? filter.match(renderer.plainText(), toConsole ? mp.spans : null) : 0;
+        if (toConsole && (filter == null || filter.visible(found, mp.spans))) {
+            long start = mp.timing ? System.nanoTime() : 0;
+            if (filter != null) renderer.highlight(mp.spans);
+            // 允许发送空行，确保 echo 等命令的空结果可见
+            if (mp.componentOutput) {
+                sender.sendMessage(Component.textOfChildren(stderr ? mp.errorPrefix : mp.prefix, renderer.toComponent()));
+            } else {
+                sender.sendMessage(renderer.toLegacy(stderr ? mp.errorLegacyPrefix : mp.legacyPrefix));
             }
-            return true;
+            if (mp.timing) mp.consoleNanos += System.nanoTime() - start;
+            mp.consoleLines++;
+        } else if (toConsole) {
+            mp.filteredLines++;
         }
-        return false;
+        if ((routes & ROUTE_SCROLLBACK) != 0) mp.scrollback.add(renderer.plainText());
+        if (mp.capture != null) {
+            if (mp.capture.size() < mp.captureLimit) mp.capture.add(renderer.plainText());
+            else mp.captureOverflow = true;
+        }
+        mp.publishLine(renderer.plainText());
+        if (mp.logWriter != null && (routes & ROUTE_LOG) != 0) {
+            // 时间戳每秒只格式化一次；日志由空闲刷新任务定期 flush，而不是逐行 flush
+            long second = System.currentTimeMillis() / 1000;
+            if (second != mp.logStampSecond) {
+                mp.logStampSecond = second;
+                mp.logStamp = "[" + LocalTime.now().format(LOG_TIME) + "] ";
+            }
+            try {
+                mp.logWriter.write(mp.logStamp);
+                if (stderr) mp.logWriter.write("[stderr] ");
+                mp.logWriter.write(renderer.plainText());
+                mp.logWriter.write('\n');
+                mp.logChars += mp.logStamp.length() + (stderr ? 9 : 0) + renderer.plainText().length() + 1;
+                mp.logDirty = true;
+            } catch (IOException ignored) {}
+        }
+        if (triggers != null && OutputFilter.triggerBits(found) != 0) fire(mp, OutputFilter.triggerBits(found), renderer.plainText(), sender);
     }
-    
-    public void sendInput(int id, String input) throws IOException {
+
+    /**
+     * 执行命中的输出触发器（在输出线程中、持有 assembler 锁）。所有动作都不阻塞输出线程。
+     */
+    private void fire(ManagedProcess mp, long bits, String line, ConsoleCommandSender sender) {
+        long now = System.currentTimeMillis();
+        while (bits != 0) {
+            Triggers.Trigger trigger = mp.triggers.lineTriggers.get(Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+            if (mp.triggers.admit(trigger, now)) runAction(mp, trigger, line, null, sender);
+        }
+    }
+
+    /**
+     * 进程结束后执行匹配的退出触发器。被 /shell stop 或插件停用结束的进程不触发。
+     */
+    private void exited(ManagedProcess mp, int exitCode, ConsoleCommandSender sender) {
+        int suppressed = mp.triggers.suppressed();
+        if (suppressed > 0) notify(sender, msg("warn-prefix") + msg("trigger-suppressed", "id", mp.id, "count", suppressed));
+        if (mp.cancelled) return;
+        for (Triggers.Trigger trigger : mp.triggers.exitTriggers) {
+            if (trigger.matchesExit(exitCode)) runAction(mp, trigger, "", exitCode, sender);
+        }
+    }
+
+    private void runAction(ManagedProcess mp, Triggers.Trigger trigger, String line, Integer exitCode, ConsoleCommandSender sender) {
+        String argument = trigger.argument.replace("{id}", String.valueOf(mp.id)).replace("{code}", (exitCode != null) ? exitCode.toString() : "");
+        notify(sender, msg("warn-prefix") + msg("trigger-fired", "id", mp.id, "trigger", trigger.name + " (" + trigger.action + ")"));
+        switch (trigger.action) {
+            case "run":
+                // 触发的进程不再继承环境的触发器，避免循环触发
+                executeAsync(new RunOptions(argument).env(mp.triggers.env).workDir(mp.triggers.workDir)
+                    .triggers(Collections.emptyList()).label(trigger.name), sender);
+                break;
+            case "server":
+                // 主线程上排队的命令有上限，匹配风暴不会堆积到下一个 tick
+                if (pendingDispatches.incrementAndGet() > plugin.getConfig().getInt("triggers.max-pending-commands", 20)) {
+                    pendingDispatches.decrementAndGet();
+                    notify(sender, msg("error-prefix") + msg("trigger-dropped", "id", mp.id, "trigger", trigger.name));
+                    break;
+                }
+                plugin.runLater(() -> {
+                    pendingDispatches.decrementAndGet();
+                    plugin.dispatchCommand(argument);
+                }, 1);
+                break;
+            case "stop":
+                // 不标记 cancelled，退出触发器仍会执行
+                if (mp.process != null) terminate(mp, stopGraceMillis(), "trigger");
+                break;
+            case "log":
+                writeMarker(mp, trigger.name, argument.replace("{line}", line));
+                break;
+        }
+    }
+
+    private void writeMarker(ManagedProcess mp, String trigger, String text) {
+        BufferedWriter writer = mp.logWriter;
+        if (writer == null) {
+            plugin.getLogger().info("[" + mp.id + "] [" + trigger + "] " + text);
+            return;
+        }
+        String entry = "[" + LocalTime.now().format(LOG_TIME) + "] [" + trigger + "] " + text + "\n";
+        try {
+            writer.write(entry);
+            mp.logChars += entry.length();
+            mp.logDirty = true;
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * 每 tick 运行一次：输出空闲超过 partial-line-flush-ms 的半行，并刷新日志文件。
+     */
+    private void flushIdle() {
+        long now = System.nanoTime();
+        long idleNanos = plugin.getConfig().getInt("partial-line-flush-ms", 100) * 1_000_000L;
+        for (ManagedProcess mp : activeProcesses.values()) {
+            LineAssembler assembler = mp.assembler;
+            if (assembler != null) assembler.flushIdle(now, idleNanos);
+            LineAssembler errorAssembler = mp.errorAssembler;
+            if (errorAssembler != null) errorAssembler.flushIdle(now, idleNanos);
+            if (mp.logDirty && mp.logWriter != null) {
+                mp.logDirty = false;
+                LogWriteEvent event = new LogWriteEvent();
+                event.begin();
+                try {
+                    mp.logWriter.flush();
+                } catch (IOException ignored) {}
+                event.end();
+                long chars = mp.logChars;
+                mp.logChars = 0;
+                if (event.shouldCommit()) {
+                    event.id = mp.id;
+                    event.chars = chars;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private synchronized void startIdleFlusher() {
+        if (idleFlusher == null) {
+            idleFlusher = plugin.runTimerAsync(this::flushIdle, 1L, 1L);
+        }
+    }
+
+    /**
+     * 异步停止进程树：先发送 SIGTERM，宽限期（stop-grace-period）后强制终止仍存活的进程。
+     * 进程退出前仍保留在列表中并继续输出，退出后照常报告退出码。
+     */
+    public boolean stopProcess(int id) {
         ManagedProcess mp = activeProcesses.get(id);
-        if (mp != null && mp.writer != null) {
-            mp.writer.write(input);
-            mp.writer.write("\n");
-            mp.writer.flush();
+        if (mp == null) return false;
+        mp.cancelled = true;
+        if (mp.tail != null && mp.detached == null) {
+            // 由跟踪线程在下一轮关闭文件并结束任务
+            activeProcesses.remove(id);
+            mp.tail.closed = true;
+            mp.closeStreams();
+        } else if (mp.process == null) {
+            // 尚未启动，输出线程会在启动前检查 cancelled
+            activeProcesses.remove(id);
         } else {
-            throw new IOException("Process not found or not interactable.");
+            terminate(mp, stopGraceMillis(), "stop");
+        }
+        return true;
+    }
+
+    private CompletableFuture<Void> terminate(ManagedProcess mp, long graceMillis, String reason) {
+        synchronized (mp) {
+            if (mp.stopping) return mp.onExit().thenApply(r -> (Void) null);
+            mp.stopping = true;
         }
+        ProcessStopEvent event = new ProcessStopEvent();
+        event.begin();
+        return terminator.terminate(mp.process, mp.processGroup, graceMillis)
+            .whenComplete((v, e) -> {
+                // 强制终止后释放可能因背压阻塞的输出线程
+                mp.closeStreams();
+                event.end();
+                if (event.shouldCommit()) {
+                    event.id = mp.id;
+                    event.pid = mp.process.pid();
+                    event.reason = reason;
+                    event.grace = graceMillis;
+                    event.commit();
+                }
+            });
+    }
+
+    private long stopGraceMillis() {
+        return plugin.getConfig().getInt("stop-grace-period", 10) * 1000L;
+    }
+    
+    /**
+     * 将一行输入排入进程的 stdin 队列，从不阻塞。进程不存在时返回 null。
+     */
+    public StdinQueue.Result sendInput(int id, String input) {
+        ManagedProcess mp = activeProcesses.get(id);
+        if (mp == null || mp.stdin == null) return null;
+        return mp.stdin.offer((input + "\n").getBytes(mp.charset));
+    }
+
+    /**
+     * 将文件内容排入进程的 stdin 队列，由写线程分块写入。进程不存在时返回 null。
+     */
+    public StdinQueue.Result sendInputFile(int id, Path file) {
+        ManagedProcess mp = activeProcesses.get(id);
+        if (mp == null || mp.stdin == null) return null;
+        return mp.stdin.offerFile(file);
+    }
+
+    /**
+     * 在已排队的输入写完后关闭进程的 stdin。进程不存在时返回 null。
+     */
+    public StdinQueue.Result closeInput(int id) {
+        ManagedProcess mp = activeProcesses.get(id);
+        if (mp == null || mp.stdin == null) return null;
+        return mp.stdin.offerEof();
+    }
+
+    /**
+     * 修改运行中进程的某一类过滤规则，pattern 为空时清除该类规则。
+     * 返回 false 表示进程不存在；正则非法时抛出 PatternSyntaxException。
+     */
+    public boolean setFilter(int id, String kind, String pattern) {
+        ManagedProcess mp = activeProcesses.get(id);
+        if (mp == null) return false;
+        mp.filter = OutputFilter.with(mp.filter, kind, pattern);
+        return true;
+    }
+
+    public boolean clearFilter(int id) {
+        ManagedProcess mp = activeProcesses.get(id);
+        if (mp == null) return false;
+        mp.filter = OutputFilter.clear(mp.filter);
+        return true;
+    }
+
+    public OutputFilter getFilter(int id) {
+        ManagedProcess mp = activeProcesses.get(id);
+        return (mp != null) ? mp.filter : null;
+    }
+
+    /**
+     * 返回进程最近的输出行（包括被过滤掉的行），进程不存在时返回 null。
+     */
+    public List<String> getScrollback(int id, int count) {
+        ManagedProcess mp = activeProcesses.get(id);
+        return (mp != null) ? mp.scrollback.last(count) : null;
     }
 
     public void listProcesses(ConsoleCommandSender sender) {
@@ -308,26 +1121,56 @@ public class ProcessManager {
         sender.sendMessage(msg("prefix") + msg("list-header"));
         activeProcesses.forEach((id, mp) -> {
             long duration = (System.currentTimeMillis() - mp.startTime) / 1000;
-            String status = (mp.process == null) ? msg("list-starting") : "";
+            String status = (mp.tail != null && mp.detached == null) ? msg("list-tail") : (mp.process == null) ? msg("list-starting") : (mp.stopping ? msg("list-stopping") : "");
             String stats = (mp.process != null && mp.process.isAlive()) ? getProcessStats(mp) : "";
+            if (mp.errorBytes > 0) stats += " " + msg("list-stderr", "bytes", FanOutRun.formatBytes(mp.errorBytes));
+            if (mp.profile != null) stats += " " + msg("list-profile", "profile", mp.profile);
+            if (mp.detached != null) stats += " " + msg("list-detached", "pid", mp.detached.pid);
             sender.sendMessage(String.format("§f[%d] %s§a%s §7(%ds) %s", id, status, mp.command, duration, stats));
         });
     }
 
+    @Override
     public Set<Integer> getActiveIds() {
         return activeProcesses.keySet();
     }
     
+    /**
+     * 插件停用时并行停止所有进程树，总耗时不超过 shutdown-grace-period 加少量余量。
+     */
     public void cleanup() {
-        if (!activeProcesses.isEmpty()) {
-            plugin.getLogger().info(msg("stopping-processes", "count", activeProcesses.size()));
-            activeProcesses.forEach((id, mp) -> {
-                if (mp.process != null) mp.process.destroyForcibly();
-                if (mp.writer != null) try { mp.writer.close(); } catch (IOException ignored) {}
-                if (mp.logWriter != null) try { mp.logWriter.close(); } catch (IOException ignored) {}
-            });
-            activeProcesses.clear();
+        // 脱离运行的进程不终止，关闭跟踪时只记录 spool 的读取位置
+        activeProcesses.values().forEach(mp -> {
+            mp.detaching = mp.detached != null;
+            if (mp.tail != null) mp.closeStreams();
+        });
+        tailer.shutdown();
+        activeProcesses.values().removeIf(mp -> mp.detached != null);
+        if (activeProcesses.isEmpty()) return;
+        plugin.getLogger().info(msg("stopping-processes", "count", activeProcesses.size()));
+        long graceMillis = plugin.getConfig().getInt("shutdown-grace-period", 3) * 1000L;
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        activeProcesses.values().forEach(mp -> {
+            mp.cancelled = true;
+            if (mp.process != null) pending.add(terminate(mp, graceMillis, "shutdown"));
+        });
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get(graceMillis + 2000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning("Some processes did not stop in time: " + e);
         }
+        activeProcesses.values().forEach(mp -> {
+            mp.closeStreams();
+            if (mp.process != null) {
+                mp.process.toHandle().descendants().forEach(ProcessHandle::destroyForcibly);
+                mp.process.destroyForcibly();
+            }
+            if (mp.stdin != null) mp.stdin.shutdown();
+            if (mp.logWriter != null) try { mp.logWriter.close(); } catch (IOException ignored) {}
+        });
+        activeProcesses.clear();
     }
 
     private Charset getNativeCharset() {
@@ -365,7 +1208,7 @@ public class ProcessManager {
                 synchronized (windowsStatsCache) {
                     if (now - lastStatsUpdate > 5000) {
                         lastStatsUpdate = now; // Prevent multiple triggers
-                        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                        plugin.runAsync(() -> {
                             Map<Long, Long> newStats = new HashMap<>();
                             try {
                                 Process p = new ProcessBuilder("tasklist", "/NH", "/FO", "CSV").start();
@@ -415,28 +1258,4 @@ public class ProcessManager {
         }
         return 0;
     }
-
-    private static class ManagedProcess {
-        Process process;
-        final String command;
-        final long startTime;
-        BufferedWriter writer;
-        BufferedWriter logWriter;
-        long lastSampleTime = 0;
-        long lastCpuNanos = 0;
-        double lastUsage = 0.0;
-        volatile boolean cancelled = false;
-
-        ManagedProcess(Process process, String command, Charset charset) {
-            this.process = process;
-            this.command = command;
-            this.startTime = System.currentTimeMillis();
-            updateProcess(process, charset);
-        }
-
-        void updateProcess(Process process, Charset charset) {
-            this.process = process;
-            this.writer = (process != null) ? new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), charset)) : null;
-        }
-    }
 }
@@ -0,0 +1,111 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 分阶段终止进程树：先向整棵树发送 SIGTERM，宽限期内全部退出则结束，否则对仍存活的进程发送 SIGKILL。
+ * 进程通过 setsid 在独立进程组中启动时，信号直接发往整个进程组，已被重新挂到 init 下的孙进程也不会遗漏。
+ * 所有信号发送都在 executor 中进行，调用方不会阻塞。
+ */
+class ProcessTerminator {
+    private static final String SETSID = locate("setsid");
+
+    private final Executor executor;
+
+    ProcessTerminator(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 返回启动独立进程组所需的命令前缀；系统不支持时返回 null。
+     */
+    static String groupLauncher() {
+        return SETSID;
+    }
+
+    /**
+     * 异步终止进程树，返回的 future 在整棵树退出或被强制终止后完成。
+     *
+     * @param group 进程是否以 setsid 启动（此时进程组 ID 等于其 PID）
+     */
+    CompletableFuture<Void> terminate(Process process, boolean group, long graceMillis) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<ProcessHandle> tree = snapshot(process.toHandle());
+            if (group) signalGroup(process.pid(), "TERM");
+            process.destroy();
+            tree.forEach(ProcessHandle::destroy);
+            return tree;
+        }, executor).thenCompose(tree -> {
+            List<CompletableFuture<ProcessHandle>> exits = new ArrayList<>();
+            exits.add(process.toHandle().onExit());
+            tree.forEach(h -> exits.add(h.onExit()));
+            return CompletableFuture.allOf(exits.toArray(new CompletableFuture[0]))
+                .completeOnTimeout(null, graceMillis, TimeUnit.MILLISECONDS)
+                .thenRunAsync(() -> {
+                    if (group) signalGroup(process.pid(), "KILL");
+                    // 宽限期内新产生的子进程也要一并处理
+                    List<ProcessHandle> survivors = snapshot(process.toHandle());
+                    tree.stream().filter(ProcessHandle::isAlive).forEach(survivors::add);
+                    survivors.forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                }, executor);
+        });
+    }
+
+    /**
+     * 进程组 pgid 中是否还有存活的进程（读取 /proc/&lt;pid&gt;/stat 的第 5 个字段）。
+     * 无法读取 /proc 时保守地返回 true。
+     */
+    static boolean groupAlive(long pgid) {
+        File[] entries = new File("/proc").listFiles((dir, name) -> !name.isEmpty() && Character.isDigit(name.charAt(0)));
+        if (entries == null) return true;
+        for (File entry : entries) {
+            try {
+                String stat = new String(Files.readAllBytes(new File(entry, "stat").toPath()), StandardCharsets.US_ASCII);
+                // 第 2 个字段（进程名）可能含空格，从最后一个 ')' 之后开始计数：状态、父进程、进程组
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ", 4);
+                // 僵尸进程已关闭全部文件描述符
+                if (Long.parseLong(fields[2]) == pgid && !fields[0].equals("Z")) return true;
+            } catch (IOException | RuntimeException ignored) {
+                // 进程在遍历期间退出
+            }
+        }
+        return false;
+    }
+
+    private static List<ProcessHandle> snapshot(ProcessHandle root) {
+        return root.isAlive() ? root.descendants().collect(Collectors.toList()) : new ArrayList<>();
+    }
+
+    private static void signalGroup(long pgid, String signal) {
+        try {
+            new ProcessBuilder("kill", "-s", signal, "--", "-" + pgid)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start()
+                .waitFor(2, TimeUnit.SECONDS);
+        } catch (IOException ignored) {
+            // 没有 kill 命令时仍会通过 ProcessHandle 逐个终止
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String locate(String name) {
+        if (System.getProperty("os.name").toLowerCase().startsWith("windows")) return null;
+        for (String dir : new String[]{"/usr/bin", "/bin", "/usr/local/bin"}) {
+            File file = new File(dir, name);
+            if (file.canExecute()) return file.getPath();
+        }
+        return null;
+    }
+}
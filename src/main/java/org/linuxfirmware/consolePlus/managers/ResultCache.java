@@ -0,0 +1,105 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.linuxfirmware.consolePlus.api.CachedResult;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 状态类命令（df、free、git status 等）的结果缓存：按条目数限制的 LRU，每个条目有各自的过期时间。
+ * 相同的请求在执行期间到达时共享同一次执行（single-flight），不会重复启动进程。
+ */
+class ResultCache {
+    private static class Entry {
+        final CachedResult result;
+        final long expiresAt;
+
+        Entry(CachedResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, CompletableFuture<CachedResult>> inFlight = new HashMap<>();
+    private long hits = 0;
+    private long shared = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    ResultCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= Math.max(1, maxEntries)) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 缓存键：实际执行的命令字符串、环境、规范化后的工作目录、额外的环境变量以及 stdin 文件
+     * （规范化路径、大小与修改时间，文件内容变化后不再命中旧结果）。
+     */
+    static String key(RunOptions options) {
+        String dir = (options.getWorkDir() != null) ? new File(options.getWorkDir()).getAbsoluteFile().toPath().normalize().toString() : "";
+        String stdin = "";
+        if (options.getStdinFile() != null) {
+            File file = options.getStdinFile().toAbsolutePath().normalize().toFile();
+            stdin = file.getPath() + ':' + file.length() + ':' + file.lastModified();
+        }
+        return options.getEnvName() + '\0' + dir + '\0' + options.getVariables() + '\0' + stdin + '\0' + options.getCommand();
+    }
+
+    /**
+     * 返回未过期的缓存结果；否则加入同键的进行中执行，或调用 loader 启动新的执行。
+     * 只有 {@link CachedResult#isComplete()} 的结果会被缓存 ttlMillis 毫秒。
+     */
+    synchronized CompletableFuture<CachedResult> get(String key, long ttlMillis, Supplier<CompletableFuture<CachedResult>> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiresAt > now) {
+                hits++;
+                return CompletableFuture.completedFuture(entry.result.withSource(CachedResult.Source.CACHED));
+            }
+            entries.remove(key);
+        }
+        CompletableFuture<CachedResult> running = inFlight.get(key);
+        if (running != null) {
+            shared++;
+            return running.thenApply(r -> r.withSource(CachedResult.Source.SHARED));
+        }
+        misses++;
+        CompletableFuture<CachedResult> future = loader.get();
+        inFlight.put(key, future);
+        future.whenComplete((r, e) -> completed(key, future, r, ttlMillis));
+        return future;
+    }
+
+    private synchronized void completed(String key, CompletableFuture<CachedResult> future, CachedResult result, long ttlMillis) {
+        inFlight.remove(key, future);
+        if (result != null && result.isComplete() && ttlMillis > 0) {
+            entries.put(key, new Entry(result, result.getCompletedAt() + ttlMillis));
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 依次为：条目数、命中、共享执行、未命中、淘汰次数。
+     */
+    synchronized long[] stats() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> e.expiresAt <= now);
+        return new long[]{entries.size(), hits, shared, misses, evictions};
+    }
+}
@@ -0,0 +1,111 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * 进程标准输入的有界投递队列。调用方只负责入队，从不阻塞；
+ * 实际写入由专用的写线程完成，子进程不读取 stdin（管道写满）时只会阻塞该写线程。
+ * 写线程在第一次入队时才启动。
+ */
+public class StdinQueue implements Runnable {
+    public enum Result { QUEUED, QUEUE_FULL, CLOSED }
+
+    private static final Object EOF = new Object();
+    private static final int TRANSFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final BlockingQueue<Object> queue;
+    private final Executor executor;
+    private final String threadName;
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    StdinQueue(OutputStream out, int capacity, Executor executor, String threadName) {
+        this.out = out;
+        this.threadName = threadName;
+        // 预留一个位置给 EOF 标记，保证关闭请求总能入队
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity) + 1);
+        this.executor = executor;
+    }
+
+    Result offer(byte[] data) {
+        return enqueue(data);
+    }
+
+    Result offerFile(Path file) {
+        return enqueue(file);
+    }
+
+    /**
+     * 在已排队的内容写完后关闭标准输入。
+     */
+    Result offerEof() {
+        return enqueue(EOF);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 进程结束时调用：丢弃未写入的内容并关闭管道。
+     */
+    void shutdown() {
+        closed = true;
+        queue.clear();
+        // 唤醒可能阻塞在 take() 上的写线程
+        queue.offer(EOF);
+        try { out.close(); } catch (IOException ignored) {}
+    }
+
+    private synchronized Result enqueue(Object item) {
+        if (closed) return Result.CLOSED;
+        if (item != EOF && queue.remainingCapacity() <= 1) return Result.QUEUE_FULL;
+        if (!queue.offer(item)) return Result.QUEUE_FULL;
+        if (item == EOF) closed = true;
+        if (!started) {
+            started = true;
+            executor.execute(this);
+        }
+        return Result.QUEUED;
+    }
+
+    @Override
+    public void run() {
+        Thread thread = Thread.currentThread();
+        String originalName = thread.getName();
+        thread.setName(threadName);
+        byte[] transfer = null;
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == EOF) break;
+                if (item instanceof byte[]) {
+                    out.write((byte[]) item);
+                } else {
+                    if (transfer == null) transfer = new byte[TRANSFER_SIZE];
+                    try (InputStream in = Files.newInputStream((Path) item)) {
+                        int n;
+                        while ((n = in.read(transfer)) != -1) out.write(transfer, 0, n);
+                    }
+                }
+                // 队列暂时为空时再刷新，连续输入可合并为一次写入
+                if (queue.isEmpty()) out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignored) {
+            // 管道已断开（进程退出或已关闭 stdin）
+        } finally {
+            shutdown();
+            thread.setName(originalName);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.linuxfirmware.consolePlus.managers;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个进程的输出触发器与退出触发器，以及各自的节流状态。定义来自配置 triggers.sets：
+ *
+ * <pre>
+ * server-ready:
+ *   - { match: "Done (", action: "server: say Server is ready", limit: 1 }
+ *   - { regex: "FATAL|Exception in thread \\S+", action: "stop" }
+ *   - { on-exit: failure, action: "run: ./notify.sh {id} {code}" }
+ * </pre>
+ *
+ * match 按字面匹配（'|' 分隔多个候选），regex 为正则。
+ * 动作：run: 命令（在同一环境与目录中启动新进程）、server: 命令（在主线程以控制台身份执行）、
+ * stop（停止本进程，仅限输出触发器）、log: 文本（写入进程日志）。{id}、{code} 在所有动作中可用，
+ * {line} 只能用于 log。输出触发器的模式并入进程的 {@link org.linuxfirmware.consolePlus.utils.OutputFilter}，
+ * 节流状态只在持有 assembler 锁时访问。
+ */
+class Triggers {
+    static class Trigger {
+        final String name;
+        // 输出触发器的模式，退出触发器为 null
+        final String pattern;
+        final boolean regex;
+        // 退出条件：success、failure、any 或具体退出码；输出触发器为 null
+        final String exitCondition;
+        final String action;
+        final String argument;
+        final int limit;
+        long lastFired = Long.MIN_VALUE;
+        int fired = 0;
+        int suppressed = 0;
+
+        Trigger(String name, String pattern, boolean regex, String exitCondition, String action, String argument, int limit) {
+            this.name = name;
+            this.pattern = pattern;
+            this.regex = regex;
+            this.exitCondition = exitCondition;
+            this.action = action;
+            this.argument = argument;
+            this.limit = limit;
+        }
+
+        boolean matchesExit(int code) {
+            switch (exitCondition) {
+                case "any": return true;
+                case "success": return code == 0;
+                case "failure": return code != 0;
+                default: return exitCondition.equals(String.valueOf(code));
+            }
+        }
+    }
+
+    final List<Trigger> lineTriggers = new ArrayList<>();
+    final List<Trigger> exitTriggers = new ArrayList<>();
+    final String env;
+    final String workDir;
+    private final long throttleMillis;
+
+    private Triggers(String env, String workDir, long throttleMillis) {
+        this.env = env;
+        this.workDir = workDir;
+        this.throttleMillis = throttleMillis;
+    }
+
+    /**
+     * 解析 names 中的触发器组。组不存在或定义无效时抛出 IllegalArgumentException（消息未本地化）。
+     */
+    static Triggers load(ConfigurationSection sets, List<String> names, String env, String workDir, long throttleMillis) {
+        Triggers triggers = new Triggers(env, workDir, throttleMillis);
+        for (String set : names) {
+            if (sets == null || !sets.isList(set)) throw new IllegalArgumentException("unknown trigger set " + set);
+            List<Map<?, ?>> entries = sets.getMapList(set);
+            for (int i = 0; i < entries.size(); i++) {
+                Map<?, ?> entry = entries.get(i);
+                String name = set + "#" + (i + 1);
+                String literal = string(entry.get("match"));
+                String regex = string(entry.get("regex"));
+                String pattern = (literal != null) ? literal : regex;
+                String exit = string(entry.get("on-exit"));
+                String action = string(entry.get("action"));
+                int conditions = ((literal != null) ? 1 : 0) + ((regex != null) ? 1 : 0) + ((exit != null) ? 1 : 0);
+                if (conditions != 1 || action == null) {
+                    throw new IllegalArgumentException(name + ": needs 'action' and one of 'match', 'regex' or 'on-exit'");
+                }
+                int colon = action.indexOf(':');
+                String kind = ((colon < 0) ? action : action.substring(0, colon)).trim().toLowerCase();
+                String argument = (colon < 0) ? "" : action.substring(colon + 1).trim();
+                boolean valid = kind.equals("stop") ? exit == null : !argument.isEmpty() && (kind.equals("run") || kind.equals("server") || kind.equals("log"));
+                if (!valid) throw new IllegalArgumentException(name + ": " + action);
+                if (!kind.equals("log") && argument.contains("{line}")) throw new IllegalArgumentException(name + ": {line} is only allowed in log actions");
+                if (exit != null) {
+                    exit = exit.toLowerCase();
+                    if (!exit.equals("any") && !exit.equals("success") && !exit.equals("failure") && !exit.matches("-?\\d+")) {
+                        throw new IllegalArgumentException(name + ": on-exit " + exit);
+                    }
+                }
+                Object limit = entry.get("limit");
+                Trigger trigger = new Trigger(name, pattern, regex != null, exit, kind, argument, (limit instanceof Number) ? ((Number) limit).intValue() : 0);
+                (pattern != null ? triggers.lineTriggers : triggers.exitTriggers).add(trigger);
+            }
+        }
+        return triggers;
+    }
+
+    List<String> patterns() {
+        List<String> patterns = new ArrayList<>();
+        for (Trigger t : lineTriggers) patterns.add(t.pattern);
+        return patterns;
+    }
+
+    /**
+     * 第 i 位表示第 i 个输出触发器使用正则。
+     */
+    long regexMask() {
+        long mask = 0;
+        for (int i = 0; i < lineTriggers.size() && i < 64; i++) {
+            if (lineTriggers.get(i).regex) mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /**
+     * 节流：同一触发器两次动作之间至少间隔 throttleMillis，且不超过 limit 次。被拦下的命中只计数。
+     */
+    boolean admit(Trigger trigger, long now) {
+        if (trigger.limit > 0 && trigger.fired >= trigger.limit) return false;
+        if (trigger.fired > 0 && now - trigger.lastFired < throttleMillis) {
+            trigger.suppressed++;
+            return false;
+        }
+        trigger.fired++;
+        trigger.lastFired = now;
+        return true;
+    }
+
+    int suppressed() {
+        int total = 0;
+        for (Trigger t : lineTriggers) total += t.suppressed;
+        return total;
+    }
+
+    private static String string(Object value) {
+        return (value == null || value.toString().isEmpty()) ? null : value.toString();
+    }
+}
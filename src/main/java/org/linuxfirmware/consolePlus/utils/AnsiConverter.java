@@ -1,5 +1,8 @@
 package org.linuxfirmware.consolePlus.utils;
 
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+
 import java.util.Map;
 
 public class AnsiConverter {
@@ -11,7 +14,58 @@ public class AnsiConverter {
         Map.entry(94, "§9"), Map.entry(95, "§d"), Map.entry(96, "§b"), Map.entry(97, "§f")
     );
 
+    // 与 ANSI_TO_MC 保持一致，保证两种输出模式下基础 16 色的观感相同
+    private static final Map<Integer, NamedTextColor> ANSI_TO_COLOR = Map.ofEntries(
+        Map.entry(30, NamedTextColor.BLACK), Map.entry(31, NamedTextColor.RED), Map.entry(32, NamedTextColor.GREEN),
+        Map.entry(33, NamedTextColor.YELLOW), Map.entry(34, NamedTextColor.BLUE), Map.entry(35, NamedTextColor.DARK_PURPLE),
+        Map.entry(36, NamedTextColor.AQUA), Map.entry(37, NamedTextColor.GRAY),
+        Map.entry(90, NamedTextColor.DARK_GRAY), Map.entry(91, NamedTextColor.RED), Map.entry(92, NamedTextColor.GREEN),
+        Map.entry(93, NamedTextColor.YELLOW), Map.entry(94, NamedTextColor.BLUE), Map.entry(95, NamedTextColor.LIGHT_PURPLE),
+        Map.entry(96, NamedTextColor.AQUA), Map.entry(97, NamedTextColor.WHITE)
+    );
+
+    private static final Map<NamedTextColor, String> COLOR_TO_MC = Map.ofEntries(
+        Map.entry(NamedTextColor.BLACK, "§0"), Map.entry(NamedTextColor.DARK_BLUE, "§1"),
+        Map.entry(NamedTextColor.DARK_GREEN, "§2"), Map.entry(NamedTextColor.DARK_AQUA, "§3"),
+        Map.entry(NamedTextColor.DARK_RED, "§4"), Map.entry(NamedTextColor.DARK_PURPLE, "§5"),
+        Map.entry(NamedTextColor.GOLD, "§6"), Map.entry(NamedTextColor.GRAY, "§7"),
+        Map.entry(NamedTextColor.DARK_GRAY, "§8"), Map.entry(NamedTextColor.BLUE, "§9"),
+        Map.entry(NamedTextColor.GREEN, "§a"), Map.entry(NamedTextColor.AQUA, "§b"),
+        Map.entry(NamedTextColor.RED, "§c"), Map.entry(NamedTextColor.LIGHT_PURPLE, "§d"),
+        Map.entry(NamedTextColor.YELLOW, "§e"), Map.entry(NamedTextColor.WHITE, "§f")
+    );
+
+    private static final int[] CUBE_LEVELS = {0, 95, 135, 175, 215, 255};
+
     public static String toMinecraft(int ansiCode) {
         return ANSI_TO_MC.get(ansiCode);
     }
+
+    /**
+     * 基础前景色 (30-37, 90-97) 对应的 Adventure 颜色，不支持时返回 null。
+     */
+    public static TextColor toTextColor(int ansiCode) {
+        return ANSI_TO_COLOR.get(ansiCode);
+    }
+
+    /**
+     * xterm 256 色索引 (38;5;n) 转 RGB。
+     */
+    public static int xterm256ToRgb(int index) {
+        if (index < 8) return ANSI_TO_COLOR.get(30 + index).value();
+        if (index < 16) return ANSI_TO_COLOR.get(90 + index - 8).value();
+        if (index < 232) {
+            int i = index - 16;
+            return (CUBE_LEVELS[i / 36] << 16) | (CUBE_LEVELS[(i / 6) % 6] << 8) | CUBE_LEVELS[i % 6];
+        }
+        int gray = 8 + 10 * (index - 232);
+        return (gray << 16) | (gray << 8) | gray;
+    }
+
+    /**
+     * 将任意 RGB 颜色映射为最接近的传统 § 颜色代码。
+     */
+    public static String nearestMinecraft(int rgb) {
+        return COLOR_TO_MC.get(NamedTextColor.nearestTo(TextColor.color(rgb)));
+    }
 }
@@ -0,0 +1,261 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 将保留了 SGR 转义序列的输出行一次性解析为纯文本与样式片段，
+ * 再按需生成 Adventure 组件或传统 § 字符串。
+ * 样式状态会跨行保留（与真实终端一致），每个进程应持有独立实例，且仅在输出线程中使用。
+ */
+public class AnsiLineRenderer {
+    private static final int NO_COLOR = -1;
+    private static final int BOLD = 1;
+    private static final int ITALIC = 2;
+    private static final int UNDERLINED = 4;
+    private static final int STRIKETHROUGH = 8;
+    private static final int HIGHLIGHT_COLOR = 0xFFAA00;
+
+    // 跨行保留的当前样式
+    private int color = NO_COLOR;
+    private int decorations = 0;
+
+    // 当前行的扫描结果：纯文本 + 样式片段
+    private final StringBuilder plain = new StringBuilder();
+    private String plainText;
+    private int[] runStart = new int[8];
+    private int[] runColor = new int[8];
+    private int[] runDecorations = new int[8];
+    private int runCount = 0;
+    private int[] scratchStart = new int[8];
+    private int[] scratchColor = new int[8];
+    private int[] scratchDecorations = new int[8];
+
+    // 样式缓存的上限，渐变等真彩色输出的颜色数量不受限，超出后清空重建
+    private static final int MAX_CACHED_STYLES = 4096;
+
+    private final int[] sgrParams = new int[16];
+    private final StringBuilder legacy = new StringBuilder();
+    private final Map<Long, Style> styleCache = new HashMap<>();
+    private final Map<Integer, String> legacyColorCache = new HashMap<>();
+
+    /**
+     * 扫描一行已解码的文本，剥离转义序列并记录样式片段。
+     */
+    public void scan(CharSequence line) {
+        plain.setLength(0);
+        plainText = null;
+        runCount = 0;
+        int len = line.length();
+        int i = 0;
+        while (i < len) {
+            char c = line.charAt(i);
+            if (c == 27) {
+                i = parseEscape(line, i + 1, len);
+                continue;
+            }
+            if (runCount == 0 || runColor[runCount - 1] != color || runDecorations[runCount - 1] != decorations) {
+                addRun(plain.length());
+            }
+            plain.append(c);
+            i++;
+        }
+    }
+
+    public String plainText() {
+        if (plainText == null) plainText = plain.toString();
+        return plainText;
+    }
+
+    /**
+     * 将已排序合并的命中区间以高亮样式覆盖到当前行的样式片段上。
+     */
+    public void highlight(LineMatcher.Spans spans) {
+        if (spans.size() == 0 || runCount == 0) return;
+        int oldCount = runCount;
+        int[] oldStart = runStart, oldColor = runColor, oldDecorations = runDecorations;
+        runStart = scratchStart;
+        runColor = scratchColor;
+        runDecorations = scratchDecorations;
+        scratchStart = oldStart;
+        scratchColor = oldColor;
+        scratchDecorations = oldDecorations;
+        runCount = 0;
+
+        int k = 0;
+        for (int r = 0; r < oldCount; r++) {
+            int end = (r + 1 < oldCount) ? oldStart[r + 1] : plain.length();
+            int pos = oldStart[r];
+            while (pos < end) {
+                while (k < spans.size() && spans.end(k) <= pos) k++;
+                if (k < spans.size() && spans.start(k) <= pos) {
+                    putRun(pos, HIGHLIGHT_COLOR, oldDecorations[r] | BOLD);
+                    pos = Math.min(end, spans.end(k));
+                } else {
+                    putRun(pos, oldColor[r], oldDecorations[r]);
+                    pos = (k < spans.size()) ? Math.min(end, spans.start(k)) : end;
+                }
+            }
+        }
+    }
+
+    public Component toComponent() {
+        if (runCount == 0) return Component.empty();
+        if (runCount == 1) return Component.text(plainText(), style(runColor[0], runDecorations[0]));
+        TextComponent.Builder builder = Component.text();
+        for (int r = 0; r < runCount; r++) {
+            builder.append(Component.text(plain.substring(runStart[r], runEnd(r)), style(runColor[r], runDecorations[r])));
+        }
+        return builder.build();
+    }
+
+    public String toLegacy() {
+        return toLegacy("");
+    }
+
+    /**
+     * 生成带前缀的 § 字符串，前缀直接写入复用的缓冲区，避免额外的字符串拼接。
+     */
+    public String toLegacy(String prefix) {
+        if (runCount == 0) return prefix;
+        legacy.setLength(0);
+        legacy.append(prefix);
+        int emittedColor = NO_COLOR;
+        int emittedDecorations = 0;
+        for (int r = 0; r < runCount; r++) {
+            int c = runColor[r];
+            int d = runDecorations[r];
+            if (c != emittedColor || d != emittedDecorations) {
+                // § 颜色代码会重置格式，因此每次样式变化都重新输出颜色与格式
+                legacy.append(c == NO_COLOR ? "§r" : legacyColor(c));
+                if ((d & BOLD) != 0) legacy.append("§l");
+                if ((d & ITALIC) != 0) legacy.append("§o");
+                if ((d & UNDERLINED) != 0) legacy.append("§n");
+                if ((d & STRIKETHROUGH) != 0) legacy.append("§m");
+                emittedColor = c;
+                emittedDecorations = d;
+            }
+            legacy.append(plain, runStart[r], runEnd(r));
+        }
+        return legacy.toString();
+    }
+
+    private int runEnd(int r) {
+        return (r + 1 < runCount) ? runStart[r + 1] : plain.length();
+    }
+
+    private void addRun(int start) {
+        if (runCount > 0 && runStart[runCount - 1] == start) {
+            // 上一个片段尚无文本，直接覆盖其样式
+            runCount--;
+        }
+        putRun(start, color, decorations);
+    }
+
+    private void putRun(int start, int c, int d) {
+        if (runCount == runStart.length) {
+            int newSize = runCount * 2;
+            runStart = Arrays.copyOf(runStart, newSize);
+            runColor = Arrays.copyOf(runColor, newSize);
+            runDecorations = Arrays.copyOf(runDecorations, newSize);
+        }
+        runStart[runCount] = start;
+        runColor[runCount] = c;
+        runDecorations[runCount] = d;
+        runCount++;
+    }
+
+    private int parseEscape(CharSequence line, int i, int len) {
+        if (i >= len || line.charAt(i) != '[') return i;
+        int paramStart = ++i;
+        while (i < len && line.charAt(i) >= 0x30 && line.charAt(i) <= 0x3F) i++;
+        if (i >= len) return len;
+        if (line.charAt(i) == 'm') applySgr(line, paramStart, i);
+        return i + 1;
+    }
+
+    private void applySgr(CharSequence line, int start, int end) {
+        if (start == end) {
+            color = NO_COLOR;
+            decorations = 0;
+            return;
+        }
+        int[] params = sgrParams;
+        int count = 0;
+        int value = 0;
+        for (int i = start; i <= end && count < params.length; i++) {
+            char c = (i < end) ? line.charAt(i) : ';';
+            if (c == ';' || c == ':') {
+                params[count++] = value;
+                value = 0;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            }
+        }
+        for (int p = 0; p < count; p++) {
+            int code = params[p];
+            switch (code) {
+                case 0: color = NO_COLOR; decorations = 0; break;
+                case 1: decorations |= BOLD; break;
+                case 3: decorations |= ITALIC; break;
+                case 4: decorations |= UNDERLINED; break;
+                case 9: decorations |= STRIKETHROUGH; break;
+                case 22: decorations &= ~BOLD; break;
+                case 23: decorations &= ~ITALIC; break;
+                case 24: decorations &= ~UNDERLINED; break;
+                case 29: decorations &= ~STRIKETHROUGH; break;
+                case 39: color = NO_COLOR; break;
+                case 38:
+                case 48:
+                    // 扩展颜色：38;5;n 或 38;2;r;g;b（背景色 48 仅跳过参数）
+                    if (p + 2 < count && params[p + 1] == 5) {
+                        if (code == 38) color = AnsiConverter.xterm256ToRgb(params[p + 2] & 0xFF);
+                        p += 2;
+                    } else if (p + 4 < count && params[p + 1] == 2) {
+                        if (code == 38) color = ((params[p + 2] & 0xFF) << 16) | ((params[p + 3] & 0xFF) << 8) | (params[p + 4] & 0xFF);
+                        p += 4;
+                    } else {
+                        p = count;
+                    }
+                    break;
+                default:
+                    TextColor basic = AnsiConverter.toTextColor(code);
+                    if (basic != null) color = basic.value();
+                    break;
+            }
+        }
+    }
+
+    private Style style(int c, int d) {
+        if (c == NO_COLOR && d == 0) return Style.empty();
+        long key = ((long) c << 4) | d;
+        Style cached = styleCache.get(key);
+        if (cached != null) return cached;
+        Style.Builder builder = Style.style();
+        if (c != NO_COLOR) {
+            TextColor named = NamedTextColor.namedColor(c);
+            builder.color(named != null ? named : TextColor.color(c));
+        }
+        if ((d & BOLD) != 0) builder.decoration(TextDecoration.BOLD, true);
+        if ((d & ITALIC) != 0) builder.decoration(TextDecoration.ITALIC, true);
+        if ((d & UNDERLINED) != 0) builder.decoration(TextDecoration.UNDERLINED, true);
+        if ((d & STRIKETHROUGH) != 0) builder.decoration(TextDecoration.STRIKETHROUGH, true);
+        Style style = builder.build();
+        if (styleCache.size() >= MAX_CACHED_STYLES) styleCache.clear();
+        styleCache.put(key, style);
+        return style;
+    }
+
+    private String legacyColor(int rgb) {
+        if (legacyColorCache.size() >= MAX_CACHED_STYLES && !legacyColorCache.containsKey(rgb)) legacyColorCache.clear();
+        return legacyColorCache.computeIfAbsent(rgb, AnsiConverter::nearestMinecraft);
+    }
+}
@@ -0,0 +1,36 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在进程之间复用读缓冲与行缓冲，避免每启动一个进程就分配一块大数组。
+ * 尺寸与请求不符的缓冲（例如修改配置后）直接丢弃。
+ */
+public class BufferPool {
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxPooled;
+
+    public BufferPool(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    public byte[] acquire(int length) {
+        byte[] buf;
+        while ((buf = free.poll()) != null) {
+            size.decrementAndGet();
+            if (buf.length == length) return buf;
+        }
+        return new byte[length];
+    }
+
+    public void release(byte[] buf) {
+        if (buf == null) return;
+        if (size.incrementAndGet() <= maxPooled) {
+            free.offer(buf);
+        } else {
+            size.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import org.linuxfirmware.consolePlus.vendor.AntShellTokeniser;
+import org.linuxfirmware.consolePlus.vendor.RobustQuoter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的命令模板。模板按 {@link ShellUtils#buildCommand} 的规则一次性完成分词、运算符拆分与转义，
+ * 只有含 {参数} 占位符的词元保留到调用时，代入参数值后再单独转义。
+ * 因此同一模板的每次调用与对展开后的命令执行 /shell run 得到相同的命令字符串。
+ * 实例不可变，可在多线程间共享。
+ */
+public final class CommandTemplate {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z0-9_-]+)}");
+
+    // 已转义的字面片段（String）与待代入的词元（int[]：偶数位为字面文本下标，奇数位为参数下标）交替排列
+    private final List<Object> parts;
+    private final List<String> texts;
+
+    private CommandTemplate(List<Object> parts, List<String> texts) {
+        this.parts = parts;
+        this.texts = texts;
+    }
+
+    /**
+     * 编译模板。params 为参数名列表，占位符中的名称不在其中时抛出 IllegalArgumentException（消息为该名称）。
+     */
+    public static CommandTemplate compile(String template, List<String> params) {
+        List<Object> parts = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        String[] args = template.trim().split(" +");
+        for (int j = 0; j < args.length; j++) {
+            String arg = args[j];
+            if (arg.isEmpty()) {
+                literal.append("\"\"");
+            } else {
+                for (String token : AntShellTokeniser.splitOperators(AntShellTokeniser.tokenise(arg))) {
+                    if (ShellUtils.isOperator(token)) {
+                        literal.append(token);
+                        continue;
+                    }
+                    Matcher m = PLACEHOLDER.matcher(token);
+                    if (!m.find()) {
+                        literal.append(RobustQuoter.quote(token));
+                        continue;
+                    }
+                    List<Integer> slots = new ArrayList<>();
+                    int last = 0;
+                    do {
+                        int param = params.indexOf(m.group(1));
+                        if (param < 0) throw new IllegalArgumentException(m.group(1));
+                        slots.add(texts.size());
+                        texts.add(token.substring(last, m.start()));
+                        slots.add(param);
+                        last = m.end();
+                    } while (m.find());
+                    slots.add(texts.size());
+                    texts.add(token.substring(last));
+                    if (literal.length() > 0) {
+                        parts.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    parts.add(slots.stream().mapToInt(Integer::intValue).toArray());
+                }
+            }
+            if (j < args.length - 1) literal.append(' ');
+        }
+        if (literal.length() > 0) parts.add(literal.toString());
+        return new CommandTemplate(parts, texts);
+    }
+
+    /**
+     * 代入参数值（顺序与编译时的参数名列表一致），返回最终执行的命令字符串。
+     */
+    public String expand(List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof String) {
+                sb.append((String) part);
+                continue;
+            }
+            int[] slots = (int[]) part;
+            token.setLength(0);
+            for (int i = 0; i < slots.length; i++) {
+                token.append((i % 2 == 0) ? texts.get(slots[i]) : values.get(slots[i]));
+            }
+            sb.append(RobustQuoter.quote(token.toString()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,346 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 将子进程的原始字节流组装为行：按换行切分，剥离除 SGR 以外的控制序列，再解码为字符。
+ * 普通字节按 8 字节一组扫描控制字符并整段复制；纯 ASCII 行与 UTF-8 行不经过 CharsetDecoder。
+ * 所有缓冲区在实例内复用：字节行缓冲从 {@link BufferPool} 借用，{@link #release()} 时归还；
+ * 解码用的字符缓冲随实例分配，不经过缓冲池。
+ * 行长上限按缓冲中的字节数计算，保留的 SGR 序列也计入其中，因此彩色行会在可见字符达到上限之前被截断。
+ *
+ * {@link #feed} 由输出线程调用，{@link #flushIdle} 由空闲刷新任务调用，两者通过内部锁互斥；
+ * 交给 {@link Sink#line} 的字符序列仅在回调期间有效。
+ */
+public class LineAssembler {
+    public interface Sink {
+        void line(CharSequence line);
+
+        void truncated();
+    }
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long CONTROL = ONES * 0x20;
+    private static final int MAX_SGR = 64;
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final ReentrantLock lock;
+    private final Sink sink;
+    private final BufferPool pool;
+    private final int maxLineLength;
+    private final boolean keepColor;
+    private final boolean utf8;
+    private final boolean asciiCompatible;
+    private final CharsetDecoder decoder;
+
+    private byte[] line;
+    private int len = 0;
+    private boolean nonAscii = false;
+    private final ByteBuffer lineView;
+    private final char[] chars;
+    private final CharBuffer charView;
+    private int charCount = 0;
+
+    private int ansiState = 0;
+    private final byte[] sgr = new byte[MAX_SGR];
+    private int sgrLen = 0;
+    private boolean sgrOverflow = false;
+    private volatile long lastFeed = System.nanoTime();
+    private boolean timing = false;
+    private long decodeNanos = 0;
+
+    public LineAssembler(Charset charset, int maxLineLength, boolean keepColor, BufferPool pool, Sink sink) {
+        this(charset, maxLineLength, keepColor, pool, new ReentrantLock(), sink);
+    }
+
+    /**
+     * 多个 assembler 共用同一个 Sink 状态（例如同一进程的 stdout 与 stderr）时传入同一把锁。
+     */
+    public LineAssembler(Charset charset, int maxLineLength, boolean keepColor, BufferPool pool, ReentrantLock lock, Sink sink) {
+        this.lock = lock;
+        this.sink = sink;
+        this.pool = pool;
+        this.maxLineLength = Math.max(16, maxLineLength);
+        this.keepColor = keepColor;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // 多留出一段余量；截断判断针对缓冲中的全部字节（包括 SGR 序列），见类注释
+        this.line = pool.acquire(this.maxLineLength + MAX_SGR + 3);
+        this.lineView = ByteBuffer.wrap(line);
+        this.chars = new char[line.length];
+        this.charView = CharBuffer.wrap(chars);
+    }
+
+    /**
+     * 处理一次读取得到的字节。
+     */
+    public void feed(byte[] data, int length) {
+        lock.lock();
+        try {
+            int i = 0;
+            while (i < length) {
+                if (ansiState == 0) {
+                    int stop = scanPlain(data, i, length);
+                    if (stop > i) appendRun(data, i, stop);
+                    i = stop;
+                    if (i >= length) break;
+                }
+                processControl(data[i++] & 0xFF);
+            }
+            lastFeed = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 开启后累计解码耗时（用于 JFR 事件），关闭时不调用 System.nanoTime。
+     */
+    public void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    public long decodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * 由定时任务调用：超过 idleNanos 没有新数据时输出未结束的半行（例如交互式提示符）。
+     * 输出线程正在处理数据时直接跳过。
+     */
+    public void flushIdle(long now, long idleNanos) {
+        if (!lock.tryLock()) return;
+        try {
+            if (line != null && len > 0 && ansiState == 0 && now - lastFeed >= idleNanos) emit(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 输入结束时调用，输出剩余内容。
+     */
+    public void finish() {
+        lock.lock();
+        try {
+            if (line != null && len > 0) emit(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            pool.release(line);
+            line = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回 [from, to) 中第一个控制字节（小于 0x20）的位置，并记录途经字节中是否有非 ASCII 字节。
+     */
+    private int scanPlain(byte[] data, int from, int to) {
+        int i = from;
+        long high = 0;
+        while (i + 8 <= to) {
+            long word = (long) LONGS.get(data, i);
+            long hit = (word - CONTROL) & ~word & HIGHS;
+            if (hit != 0) {
+                // 最低位的命中总是准确的，更高位可能是借位造成的误报
+                int offset = Long.numberOfTrailingZeros(hit) >>> 3;
+                if (offset > 0) high |= word & (-1L >>> (64 - offset * 8));
+                if ((high & HIGHS) != 0) nonAscii = true;
+                return i + offset;
+            }
+            high |= word;
+            i += 8;
+        }
+        if ((high & HIGHS) != 0) nonAscii = true;
+        while (i < to) {
+            int b = data[i];
+            if (b >= 0 && b < 0x20) return i;
+            if (b < 0) nonAscii = true;
+            i++;
+        }
+        return to;
+    }
+
+    private void appendRun(byte[] data, int from, int to) {
+        while (from < to) {
+            int n = Math.max(0, Math.min(to - from, maxLineLength - len));
+            System.arraycopy(data, from, line, len, n);
+            len += n;
+            from += n;
+            if (len >= maxLineLength) {
+                emit(false);
+                sink.truncated();
+            }
+        }
+    }
+
+    private void processControl(int b) {
+        // 忽略回车符，仅在换行符时输出
+        if (b == 13) return;
+        if (b == 10) {
+            emit(false);
+            return;
+        }
+        switch (ansiState) {
+            case 0:
+                if (b == 27) {
+                    ansiState = 1;
+                    return;
+                }
+                break;
+            case 1:
+                ansiState = (b == '[') ? 2 : (b == '(') ? 3 : 0;
+                return;
+            case 2:
+                if (b >= 0x30 && b <= 0x3F) {
+                    if (sgrLen < MAX_SGR) sgr[sgrLen++] = (byte) b;
+                    else sgrOverflow = true;
+                    return;
+                }
+                // 仅保留 SGR 序列，交由渲染器在解码后统一转换
+                if (b == 'm' && keepColor && !sgrOverflow) {
+                    // 放不下时先截断输出当前行，颜色序列留在下一段开头
+                    if (len + sgrLen + 3 > maxLineLength) {
+                        emit(false);
+                        sink.truncated();
+                    }
+                    line[len++] = 27;
+                    line[len++] = '[';
+                    System.arraycopy(sgr, 0, line, len, sgrLen);
+                    len += sgrLen;
+                    line[len++] = 'm';
+                }
+                sgrLen = 0;
+                sgrOverflow = false;
+                ansiState = 0;
+                return;
+            default:
+                ansiState = 0;
+                return;
+        }
+        // 过滤不可见控制字符/二进制输出
+        if (b < 32 && b != 9) return;
+        line[len++] = (byte) b;
+        if (len >= maxLineLength) {
+            emit(false);
+            sink.truncated();
+        }
+    }
+
+    /**
+     * 解码并输出当前缓冲的内容。非结束状态下，末尾不完整的多字节字符保留到下一行。
+     */
+    private void emit(boolean endOfInput) {
+        long start = timing ? System.nanoTime() : 0;
+        int consumed;
+        if (!nonAscii && asciiCompatible) {
+            for (int k = 0; k < len; k++) chars[k] = (char) line[k];
+            charCount = len;
+            consumed = len;
+        } else if (utf8) {
+            consumed = decodeUtf8(endOfInput);
+        } else {
+            consumed = decodeGeneric(endOfInput);
+        }
+        charView.position(0).limit(charCount);
+        if (timing) decodeNanos += System.nanoTime() - start;
+        sink.line(charView);
+
+        int rest = len - consumed;
+        if (rest > 0) System.arraycopy(line, consumed, line, 0, rest);
+        len = rest;
+        nonAscii = rest > 0;
+    }
+
+    private int decodeUtf8(boolean endOfInput) {
+        byte[] src = line;
+        char[] dst = chars;
+        int i = 0;
+        int c = 0;
+        while (i < len) {
+            int b = src[i];
+            if (b >= 0) {
+                dst[c++] = (char) b;
+                i++;
+                continue;
+            }
+            int extra, cp, min;
+            if ((b & 0xE0) == 0xC0) { extra = 1; cp = b & 0x1F; min = 0x80; }
+            else if ((b & 0xF0) == 0xE0) { extra = 2; cp = b & 0x0F; min = 0x800; }
+            else if ((b & 0xF8) == 0xF0) { extra = 3; cp = b & 0x07; min = 0x10000; }
+            else {
+                dst[c++] = REPLACEMENT;
+                i++;
+                continue;
+            }
+            int avail = Math.min(extra, len - i - 1);
+            int k = 1;
+            while (k <= avail && (src[i + k] & 0xC0) == 0x80) {
+                cp = (cp << 6) | (src[i + k] & 0x3F);
+                k++;
+            }
+            if (k <= extra) {
+                // 字符被缓冲末尾截断，留待下次解码
+                if (k > avail && !endOfInput) break;
+                dst[c++] = REPLACEMENT;
+                i += k;
+                continue;
+            }
+            if (cp < min || cp > 0x10FFFF || (cp >= 0xD800 && cp <= 0xDFFF)) {
+                dst[c++] = REPLACEMENT;
+            } else if (cp >= 0x10000) {
+                dst[c++] = Character.highSurrogate(cp);
+                dst[c++] = Character.lowSurrogate(cp);
+            } else {
+                dst[c++] = (char) cp;
+            }
+            i += k;
+        }
+        charCount = c;
+        return i;
+    }
+
+    private int decodeGeneric(boolean endOfInput) {
+        lineView.limit(len).position(0);
+        charView.clear();
+        decoder.decode(lineView, charView, endOfInput);
+        if (endOfInput) {
+            decoder.flush(charView);
+            decoder.reset();
+        }
+        charCount = charView.position();
+        return lineView.position();
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        byte[] probe = new byte[128];
+        for (int i = 0; i < probe.length; i++) probe[i] = (byte) i;
+        String decoded = new String(probe, charset);
+        if (decoded.length() != probe.length) return false;
+        for (int i = 0; i < probe.length; i++) {
+            if (decoded.charAt(i) != i) return false;
+        }
+        return true;
+    }
+}
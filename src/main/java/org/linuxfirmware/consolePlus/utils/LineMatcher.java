@@ -0,0 +1,305 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 将多条规则编译为一个组合匹配器：纯文本规则使用 Aho-Corasick 自动机一次扫描，
+ * 含正则元字符的规则各自编译为独立的 Pattern 作为后备（合并为一个交替式会让先出现的规则吞掉重叠文本，
+ * 并打乱反向引用的组号）。
+ * 每条规则带有一个标签位 (0-63)，match 返回命中的标签位掩码。
+ * 实例不可变，可在多线程间共享。
+ */
+public class LineMatcher {
+    private static final String REGEX_META = "\\.[]{}()*+?^$";
+
+    // Aho-Corasick：字符表压缩后的稠密状态转移表
+    private final int[] asciiIndex = new int[128];
+    private final char[] extraChars;
+    private final int[] extraIndex;
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final long[] outputMasks;
+    private final int[] literalLengths;
+    private final long[] literalTags;
+
+    // 正则后备：每条规则一个 Pattern
+    private final Pattern[] regexes;
+    private final long[] regexTags;
+
+    private final long allTags;
+
+    private LineMatcher(List<String> literals, List<Long> literalTagList, List<String> regexes, List<Long> regexTagList) {
+        long tags = 0;
+        for (long t : literalTagList) tags |= t;
+        for (long t : regexTagList) tags |= t;
+        this.allTags = tags;
+
+        // 字符表
+        List<Character> extra = new ArrayList<>();
+        int next = 1;
+        Map<Character, Integer> alphabet = new HashMap<>();
+        for (String lit : literals) {
+            for (int i = 0; i < lit.length(); i++) {
+                char c = lit.charAt(i);
+                if (alphabet.containsKey(c)) continue;
+                alphabet.put(c, next);
+                if (c < 128) asciiIndex[c] = next;
+                else extra.add(c);
+                next++;
+            }
+        }
+        extra.sort(null);
+        this.extraChars = new char[extra.size()];
+        for (int i = 0; i < extra.size(); i++) extraChars[i] = extra.get(i);
+        this.alphabetSize = next;
+        this.extraIndex = new int[extraChars.length];
+        for (int i = 0; i < extraChars.length; i++) extraIndex[i] = alphabet.get(extraChars[i]);
+
+        // 构建 trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        gotoTable.add(new int[alphabetSize]);
+        out.add(new ArrayList<>());
+        this.literalLengths = new int[literals.size()];
+        this.literalTags = new long[literals.size()];
+        for (int p = 0; p < literals.size(); p++) {
+            String lit = literals.get(p);
+            literalLengths[p] = lit.length();
+            literalTags[p] = literalTagList.get(p);
+            int state = 0;
+            for (int i = 0; i < lit.length(); i++) {
+                int a = alphabet.get(lit.charAt(i));
+                if (gotoTable.get(state)[a] == 0) {
+                    gotoTable.add(new int[alphabetSize]);
+                    out.add(new ArrayList<>());
+                    gotoTable.get(state)[a] = gotoTable.size() - 1;
+                }
+                state = gotoTable.get(state)[a];
+            }
+            out.get(state).add(p);
+        }
+
+        // BFS 计算失败链接，并将转移补全为 DFA
+        int states = gotoTable.size();
+        int[] fail = new int[states];
+        this.transitions = new int[states * alphabetSize];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int a = 1; a < alphabetSize; a++) {
+            int s = gotoTable.get(0)[a];
+            transitions[a] = s;
+            if (s != 0) queue.add(s);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            out.get(s).addAll(out.get(fail[s]));
+            for (int a = 1; a < alphabetSize; a++) {
+                int t = gotoTable.get(s)[a];
+                if (t != 0) {
+                    fail[t] = transitions[fail[s] * alphabetSize + a];
+                    transitions[s * alphabetSize + a] = t;
+                    queue.add(t);
+                } else {
+                    transitions[s * alphabetSize + a] = transitions[fail[s] * alphabetSize + a];
+                }
+            }
+        }
+        this.outputs = new int[states][];
+        this.outputMasks = new long[states];
+        for (int s = 0; s < states; s++) {
+            List<Integer> o = out.get(s);
+            outputs[s] = new int[o.size()];
+            for (int i = 0; i < o.size(); i++) {
+                outputs[s][i] = o.get(i);
+                outputMasks[s] |= literalTags[o.get(i)];
+            }
+        }
+
+        this.regexes = new Pattern[regexes.size()];
+        this.regexTags = new long[regexes.size()];
+        for (int i = 0; i < regexes.size(); i++) {
+            this.regexes[i] = Pattern.compile(regexes.get(i));
+            regexTags[i] = regexTagList.get(i);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isEmpty() {
+        return allTags == 0;
+    }
+
+    /**
+     * 匹配一行文本，返回命中的标签位掩码。
+     * spans 不为 null 时，记录 spanTags 中各标签的命中区间（基于 text 的下标）。
+     */
+    public long match(CharSequence text, Spans spans, long spanTags) {
+        long found = 0;
+        boolean collect = spans != null && spanTags != 0;
+        if (transitions.length > alphabetSize) {
+            int state = 0;
+            int len = text.length();
+            for (int i = 0; i < len; i++) {
+                state = transitions[state * alphabetSize + indexOf(text.charAt(i))];
+                long mask = outputMasks[state];
+                if (mask == 0) continue;
+                found |= mask;
+                if (collect && (mask & spanTags) != 0) {
+                    for (int p : outputs[state]) {
+                        if ((literalTags[p] & spanTags) != 0) spans.add(i + 1 - literalLengths[p], i + 1);
+                    }
+                } else if (!collect && found == allTags) {
+                    return found;
+                }
+            }
+        }
+        for (int r = 0; r < regexes.length; r++) {
+            long tag = regexTags[r];
+            boolean wantSpans = collect && (tag & spanTags) != 0;
+            // 标签已由其他规则命中且无需记录区间时跳过
+            if (!wantSpans && (found & tag) != 0) continue;
+            Matcher m = regexes[r].matcher(text);
+            if (!wantSpans) {
+                if (m.find()) found |= tag;
+                continue;
+            }
+            while (m.find()) {
+                found |= tag;
+                if (m.end() > m.start()) spans.add(m.start(), m.end());
+            }
+        }
+        return found;
+    }
+
+    private int indexOf(char c) {
+        if (c < 128) return asciiIndex[c];
+        int idx = Arrays.binarySearch(extraChars, c);
+        return (idx >= 0) ? extraIndex[idx] : 0;
+    }
+
+    /**
+     * 判断单个模式是否需要按正则处理。纯文本以 '|' 分隔时拆分为多个字面量。
+     */
+    static boolean isRegex(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_META.indexOf(pattern.charAt(i)) != -1) return true;
+        }
+        return false;
+    }
+
+    public static class Builder {
+        private final List<String> literals = new ArrayList<>();
+        private final List<Long> literalTags = new ArrayList<>();
+        private final List<String> regexes = new ArrayList<>();
+        private final List<Long> regexTags = new ArrayList<>();
+
+        /**
+         * 添加一条规则，tag 为 0-63 的标签位序号。
+         * 含正则元字符的模式会被预编译校验，非法时抛出 PatternSyntaxException。
+         */
+        public Builder add(String pattern, int tag) {
+            if (pattern == null || pattern.isEmpty()) return this;
+            long bit = 1L << tag;
+            if (isRegex(pattern)) {
+                Pattern.compile(pattern);
+                regexes.add(pattern);
+                regexTags.add(bit);
+            } else {
+                for (String lit : pattern.split("\\|")) {
+                    if (lit.isEmpty()) continue;
+                    literals.add(lit);
+                    literalTags.add(bit);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 添加纯文本规则，正则元字符按字面匹配，'|' 仍然分隔多个字面量。
+         */
+        public Builder addLiteral(String text, int tag) {
+            if (text == null || text.isEmpty()) return this;
+            for (String lit : text.split("\\|")) {
+                if (lit.isEmpty()) continue;
+                literals.add(lit);
+                literalTags.add(1L << tag);
+            }
+            return this;
+        }
+
+        public LineMatcher build() {
+            return new LineMatcher(literals, literalTags, regexes, regexTags);
+        }
+    }
+
+    /**
+     * 可复用的命中区间集合，仅供单线程使用。
+     */
+    public static class Spans {
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private int size = 0;
+
+        public void clear() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int start(int i) {
+            return starts[i];
+        }
+
+        public int end(int i) {
+            return ends[i];
+        }
+
+        void add(int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        /**
+         * 按起点排序并合并重叠区间。
+         */
+        public void normalize() {
+            for (int i = 1; i < size; i++) {
+                int s = starts[i], e = ends[i], j = i - 1;
+                while (j >= 0 && starts[j] > s) {
+                    starts[j + 1] = starts[j];
+                    ends[j + 1] = ends[j];
+                    j--;
+                }
+                starts[j + 1] = s;
+                ends[j + 1] = e;
+            }
+            int merged = 0;
+            for (int i = 0; i < size; i++) {
+                if (merged > 0 && starts[i] <= ends[merged - 1]) {
+                    ends[merged - 1] = Math.max(ends[merged - 1], ends[i]);
+                } else {
+                    starts[merged] = starts[i];
+                    ends[merged] = ends[i];
+                    merged++;
+                }
+            }
+            size = merged;
+        }
+    }
+}
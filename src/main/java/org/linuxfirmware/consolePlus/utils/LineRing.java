@@ -0,0 +1,35 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 固定容量的行环形缓冲区，用于保存进程最近的输出（回滚缓冲）。
+ */
+public class LineRing {
+    private final String[] lines;
+    private int head = 0;
+    private int size = 0;
+
+    public LineRing(int capacity) {
+        this.lines = new String[Math.max(1, capacity)];
+    }
+
+    public synchronized void add(String line) {
+        lines[head] = line;
+        head = (head + 1) % lines.length;
+        if (size < lines.length) size++;
+    }
+
+    /**
+     * 按时间顺序返回最近的 count 行。
+     */
+    public synchronized List<String> last(int count) {
+        int n = Math.min(count, size);
+        List<String> result = new ArrayList<>(n);
+        for (int i = n; i > 0; i--) {
+            result.add(lines[(head - i + lines.length) % lines.length]);
+        }
+        return result;
+    }
+}
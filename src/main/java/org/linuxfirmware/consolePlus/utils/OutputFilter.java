@@ -0,0 +1,139 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个进程的输出过滤规则（grep / exclude / highlight），与输出触发器的模式一起编译为一个组合匹配器，
+ * 每行只扫描一次。实例不可变，修改时整体替换。
+ */
+public class OutputFilter {
+    private static final int TAG_GREP = 0;
+    private static final int TAG_EXCLUDE = 1;
+    private static final int TAG_HIGHLIGHT = 2;
+    private static final long GREP = 1L << TAG_GREP;
+    private static final long EXCLUDE = 1L << TAG_EXCLUDE;
+    private static final long HIGHLIGHT = 1L << TAG_HIGHLIGHT;
+    // 触发器 i 使用标签位 TAG_TRIGGER + i
+    private static final int TAG_TRIGGER = 3;
+    public static final int MAX_TRIGGERS = 64 - TAG_TRIGGER;
+
+    private final String grep;
+    private final String exclude;
+    private final String highlight;
+    private final List<String> triggers;
+    // 第 i 位为 1 表示触发器 i 是正则，否则按字面匹配
+    private final long triggerRegex;
+    private final LineMatcher matcher;
+
+    private OutputFilter(String grep, String exclude, String highlight, List<String> triggers, long triggerRegex) {
+        this.grep = emptyToNull(grep);
+        this.exclude = emptyToNull(exclude);
+        this.highlight = emptyToNull(highlight);
+        this.triggers = triggers;
+        this.triggerRegex = triggerRegex;
+        LineMatcher.Builder builder = LineMatcher.builder()
+            .add(this.grep, TAG_GREP)
+            .add(this.exclude, TAG_EXCLUDE)
+            .add(this.highlight, TAG_HIGHLIGHT);
+        for (int i = 0; i < triggers.size(); i++) {
+            if ((triggerRegex & (1L << i)) != 0) builder.add(triggers.get(i), TAG_TRIGGER + i);
+            else builder.addLiteral(triggers.get(i), TAG_TRIGGER + i);
+        }
+        this.matcher = builder.build();
+    }
+
+    /**
+     * 编译过滤规则，全部为空时返回 null。正则非法时抛出 PatternSyntaxException。
+     */
+    public static OutputFilter compile(String grep, String exclude, String highlight) {
+        return compile(grep, exclude, highlight, Collections.emptyList(), 0);
+    }
+
+    private static OutputFilter compile(String grep, String exclude, String highlight, List<String> triggers, long triggerRegex) {
+        OutputFilter filter = new OutputFilter(grep, exclude, highlight, triggers, triggerRegex);
+        return filter.matcher.isEmpty() ? null : filter;
+    }
+
+    /**
+     * 在 base 的过滤规则上附加输出触发器的模式（最多 {@link #MAX_TRIGGERS} 个），第 i 个模式命中时
+     * {@link #triggerBits} 的第 i 位为 1。regexMask 的第 i 位表示第 i 个模式是正则，否则按字面匹配。
+     */
+    public static OutputFilter withTriggers(OutputFilter base, List<String> patterns, long regexMask) {
+        if (patterns.size() > MAX_TRIGGERS) throw new IllegalArgumentException("too many triggers: " + patterns.size());
+        return (base != null) ? compile(base.grep, base.exclude, base.highlight, patterns, regexMask) : compile(null, null, null, patterns, regexMask);
+    }
+
+    /**
+     * 清除过滤规则，保留触发器。
+     */
+    public static OutputFilter clear(OutputFilter base) {
+        return (base != null) ? compile(null, null, null, base.triggers, base.triggerRegex) : null;
+    }
+
+    public static OutputFilter with(OutputFilter base, String kind, String pattern) {
+        String g = (base != null) ? base.grep : null;
+        String e = (base != null) ? base.exclude : null;
+        String h = (base != null) ? base.highlight : null;
+        switch (kind) {
+            case "grep": g = pattern; break;
+            case "exclude": e = pattern; break;
+            case "highlight": h = pattern; break;
+            default: throw new IllegalArgumentException(kind);
+        }
+        return (base != null) ? compile(g, e, h, base.triggers, base.triggerRegex) : compile(g, e, h);
+    }
+
+    /**
+     * 判断该行是否应显示在控制台；需要高亮时将命中区间写入 spans。
+     */
+    public boolean test(CharSequence plain, LineMatcher.Spans spans) {
+        return visible(match(plain, spans), spans);
+    }
+
+    /**
+     * 扫描一行，返回命中的标签位掩码。spans 为 null 时不收集高亮区间。
+     */
+    public long match(CharSequence plain, LineMatcher.Spans spans) {
+        if (spans == null) return matcher.match(plain, null, 0);
+        spans.clear();
+        return matcher.match(plain, spans, highlight != null ? HIGHLIGHT : 0);
+    }
+
+    /**
+     * 根据 {@link #match} 的结果判断该行是否应显示在控制台。
+     */
+    public boolean visible(long found, LineMatcher.Spans spans) {
+        if ((found & EXCLUDE) != 0) return false;
+        if (grep != null && (found & GREP) == 0) return false;
+        spans.normalize();
+        return true;
+    }
+
+    /**
+     * 从 {@link #match} 的结果中取出触发器位。
+     */
+    public static long triggerBits(long found) {
+        return found >>> TAG_TRIGGER;
+    }
+
+    public boolean hasTriggers() {
+        return !triggers.isEmpty();
+    }
+
+    public String getGrep() {
+        return grep;
+    }
+
+    public String getExclude() {
+        return exclude;
+    }
+
+    public String getHighlight() {
+        return highlight;
+    }
+
+    private static String emptyToNull(String s) {
+        return (s == null || s.isEmpty()) ? null : s;
+    }
+}
@@ -0,0 +1,216 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带真实背压的输出发布者：每个订阅者拥有固定容量的缓冲区，
+ * 任一订阅者缓冲区已满时 {@link #submit} 会阻塞输出线程，直到订阅者请求更多数据、取消订阅或发布者被关闭。
+ * 与 SubmissionPublisher 不同，阻塞中的 submit 可以被 {@link #close} 唤醒，不会卡死输出线程。
+ * 多个输出源共用的线程不能被单个订阅者拖住，改用 {@link #offer}：缓冲区已满的订阅者直接丢弃该项。
+ */
+public class OutputPublisher<T> implements Flow.Publisher<T> {
+    private final Executor executor;
+    private final int bufferSize;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = lock.newCondition();
+    private volatile boolean closed = false;
+
+    public OutputPublisher(Executor executor, int bufferSize) {
+        this.executor = executor;
+        this.bufferSize = Math.max(1, bufferSize);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        lock.lock();
+        try {
+            if (closed) subscription.completePending = true;
+            else subscriptions.add(subscription);
+        } finally {
+            lock.unlock();
+        }
+        subscriber.onSubscribe(subscription);
+        if (subscription.completePending) {
+            lock.lock();
+            try {
+                subscription.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * 向所有订阅者发布一项数据，必要时阻塞等待缓冲区空间。发布者已关闭时返回 false。
+     */
+    public boolean submit(T item) {
+        if (subscriptions.isEmpty()) return !closed;
+        lock.lock();
+        try {
+            while (!closed && isAnyFull()) {
+                space.awaitUninterruptibly();
+            }
+            if (closed) return false;
+            for (Subscription s : subscriptions) {
+                s.queue.add(item);
+                s.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不阻塞地发布一项数据：缓冲区已满的订阅者丢弃该项，其他订阅者照常接收。
+     * 返回 false 表示发布者已关闭或有订阅者丢弃了数据。
+     */
+    public boolean offer(T item) {
+        if (subscriptions.isEmpty()) return !closed;
+        lock.lock();
+        try {
+            if (closed) return false;
+            boolean all = true;
+            for (Subscription s : subscriptions) {
+                if (s.queue.size() >= bufferSize) {
+                    all = false;
+                    continue;
+                }
+                s.queue.add(item);
+                s.signal();
+            }
+            return all;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭发布者：已缓冲的数据仍会投递，随后发送 onComplete，并唤醒阻塞中的 submit。
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            for (Subscription s : subscriptions) {
+                s.completePending = true;
+                s.signal();
+            }
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isAnyFull() {
+        for (Subscription s : subscriptions) {
+            if (s.queue.size() >= bufferSize) return true;
+        }
+        return false;
+    }
+
+    private class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private long demand = 0;
+        private boolean draining = false;
+        private boolean cancelled = false;
+        private boolean completePending = false;
+
+        Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            lock.lock();
+            try {
+                demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                queue.clear();
+                subscriptions.remove(this);
+                space.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 在持有锁的情况下调用：有可投递的信号且当前未在投递时，提交一次投递任务。
+         */
+        void signal() {
+            if (draining || cancelled) return;
+            if ((demand > 0 && !queue.isEmpty()) || (completePending && queue.isEmpty())) {
+                draining = true;
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                T item;
+                lock.lock();
+                try {
+                    if (cancelled) {
+                        draining = false;
+                        return;
+                    }
+                    if (demand > 0 && !queue.isEmpty()) {
+                        item = queue.poll();
+                        demand--;
+                        space.signalAll();
+                    } else if (completePending && queue.isEmpty()) {
+                        cancelled = true;
+                        subscriptions.remove(this);
+                        item = null;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    if (item == null) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(item);
+                } catch (Throwable t) {
+                    cancel();
+                    subscriber.onError(t);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,17 +1,36 @@
 package org.linuxfirmware.consolePlus.utils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.linuxfirmware.consolePlus.vendor.AntShellTokeniser;
 import org.linuxfirmware.consolePlus.vendor.RobustQuoter;
 
 public class ShellUtils {
+    private static final Set<String> OPERATORS = Set.of(">>", "<<", "2>&1", "1>", "2>", ">&", "||", "&&", ">", "<", "|", ";", "&", "!");
+
+    /**
+     * 分词后的词元是否为原样保留（不转义）的 shell 运算符。
+     */
+    public static boolean isOperator(String token) {
+        return OPERATORS.contains(token);
+    }
+
     /**
      * 构建最终执行的命令行字符串。
      */
     public static String buildCommand(String[] args, int startIndex) {
         StringBuilder cmdBuilder = new StringBuilder();
-        Set<String> ops = Set.of(">>", "<<", "2>&1", "1>", "2>", ">&", "||", "&&", ">", "<", "|", ";", "&", "!");
 
         for (int j = startIndex; j < args.length; j++) {
             String arg = args[j];
@@ -23,7 +42,7 @@ public class ShellUtils {
                 List<String> tokens = AntShellTokeniser.splitOperators(rawTokens);
                 
                 for (String token : tokens) {
-                    if (ops.contains(token)) {
+                    if (OPERATORS.contains(token)) {
                         cmdBuilder.append(token);
                     } else {
                         // 使用 RobustQuoter 进行跨平台参数转义
@@ -37,4 +56,66 @@ public class ShellUtils {
         }
         return cmdBuilder.toString();
     }
+
+    /**
+     * 解析逗号分隔的目录列表，每一项可以是普通路径或 glob（如 servers/*、/srv/{lobby,survival}）。
+     * 只返回存在的目录，按出现顺序去重。
+     */
+    public static List<File> resolveDirectories(String spec) throws IOException {
+        Set<File> result = new LinkedHashSet<>();
+        for (String entry : splitList(spec)) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            if (!isGlob(trimmed)) {
+                File dir = new File(trimmed);
+                if (dir.isDirectory()) result.add(dir);
+                continue;
+            }
+            // 不含通配符的前缀作为遍历起点，其余部分决定遍历深度
+            String[] segments = trimmed.replace('\\', '/').split("/");
+            int fixed = 0;
+            while (fixed < segments.length && !isGlob(segments[fixed])) fixed++;
+            String base = String.join("/", java.util.Arrays.copyOfRange(segments, 0, fixed));
+            Path root = Paths.get(base.isEmpty() ? (trimmed.startsWith("/") ? "/" : ".") : base);
+            if (!Files.isDirectory(root)) continue;
+            String pattern = String.join("/", java.util.Arrays.copyOfRange(segments, fixed, segments.length));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            try (Stream<Path> walk = Files.walk(root, segments.length - fixed)) {
+                List<Path> matches = walk
+                    .filter(p -> p != root && Files.isDirectory(p) && matcher.matches(root.relativize(p)))
+                    .sorted()
+                    .collect(Collectors.toList());
+                for (Path p : matches) result.add(p.toFile());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * 按逗号切分，但保留 glob 花括号内的逗号。
+     */
+    private static List<String> splitList(String spec) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < spec.length(); i++) {
+            char c = spec.charAt(i);
+            if (c == '{') depth++;
+            else if (c == '}' && depth > 0) depth--;
+            else if (c == ',' && depth == 0) {
+                parts.add(spec.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(spec.substring(start));
+        return parts;
+    }
+
+    private static boolean isGlob(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return true;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,364 @@
+package org.linuxfirmware.consolePlus.stress;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+import org.linuxfirmware.consolePlus.I18n;
+import org.linuxfirmware.consolePlus.api.RunOptions;
+import org.linuxfirmware.consolePlus.api.ShellJob;
+import org.linuxfirmware.consolePlus.managers.EnvironmentManager;
+import org.linuxfirmware.consolePlus.managers.ProcessHost;
+import org.linuxfirmware.consolePlus.managers.ProcessManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * 并发压力测试：不启动服务器，用替身宿主（配置、调度器）和替身控制台驱动 {@link ProcessManager}，
+ * 同时运行多种本地输出生成进程，报告端到端吞吐、控制台投递延迟分位数、堆分配与线程数。
+ *
+ * <pre>
+ * mvn -Pstress test-compile exec:java -Dstress.yes=10 -Dstress.seq=10 -Dstress.ansi=10 -Dstress.drip=20 -Dstress.seconds=30
+ * </pre>
+ * 以 config. 开头的系统属性覆盖 config.yml 中的同名项，例如 -Dconfig.output-mode=legacy。
+ * 仅支持提供 sh、yes、seq、awk 与 GNU date 的类 Unix 系统。
+ */
+public final class StressHarness {
+    private static final Map<String, String> GENERATORS = new LinkedHashMap<>();
+
+    static {
+        GENERATORS.put("yes", "yes 'ConsolePlus stress: the quick brown fox jumps over the lazy dog'");
+        GENERATORS.put("seq", "seq 1 2000000000");
+        GENERATORS.put("ansi", "awk 'BEGIN { for (i = 0; ; i++) printf \"\\033[3%dm[%06d] \\033[1mWARN\\033[22m colored \\033[4mpayload\\033[0m tail text\\n\", i % 8, i }'");
+        // 每行是生成时刻的纳秒时间戳，用于计算投递延迟
+        GENERATORS.put("drip", "while :; do date +%s%N; sleep " + System.getProperty("stress.drip-interval", "0.05") + "; done");
+    }
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final Map<String, LongAdder> linesByKind = new ConcurrentHashMap<>();
+    private final long[] latencies = new long[1 << 20];
+    private final AtomicInteger latencyCount = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        new StressHarness().run();
+    }
+
+    private void run() throws Exception {
+        int seconds = Integer.getInteger("stress.seconds", 20);
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        mix.put("yes", Integer.getInteger("stress.yes", 10));
+        mix.put("seq", Integer.getInteger("stress.seq", 10));
+        mix.put("ansi", Integer.getInteger("stress.ansi", 10));
+        mix.put("drip", Integer.getInteger("stress.drip", 20));
+
+        StandInHost host = new StandInHost(Files.createTempDirectory("consoleplus-stress").toFile(), standInConsole());
+        ProcessManager manager = new ProcessManager(host, new EnvironmentManager(host));
+        System.out.println("ConsolePlus stress: " + mix + " for " + seconds + "s, output-mode=" + host.config.getString("output-mode")
+            + ", logs in " + host.dataFolder);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long[] gcBefore = gcStats();
+        long start = System.nanoTime();
+
+        List<ShellJob> jobs = new ArrayList<>();
+        mix.forEach((kind, count) -> {
+            linesByKind.put(kind, new LongAdder());
+            for (int i = 0; i < count; i++) {
+                ShellJob job = manager.executeAsync(new RunOptions(GENERATORS.get(kind)).label(kind), host.console);
+                if (job != null) jobs.add(job);
+            }
+        });
+
+        long lastMessages = 0;
+        int peakThreads = 0;
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long now = messages.sum();
+            peakThreads = Math.max(peakThreads, threads.getThreadCount());
+            System.out.printf("  t=%3ds  %,10d lines/s  threads=%d  heap=%s%n", s, now - lastMessages, threads.getThreadCount(),
+                formatBytes(memory.getHeapMemoryUsage().getUsed()));
+            lastMessages = now;
+        }
+
+        long stopStart = System.nanoTime();
+        jobs.forEach(ShellJob::stop);
+        CompletableFuture<?>[] exits = jobs.stream().map(ShellJob::onExit).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(exits).get(30, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            System.out.println("  WARNING: not all jobs exited within 30s of stop");
+        }
+        long stopMillis = (System.nanoTime() - stopStart) / 1_000_000;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long allocated = allocatedBytes(threads) - allocatedBefore;
+        long[] gc = gcStats();
+
+        System.out.println();
+        System.out.printf("Console messages: %,d (%,.0f/s), %s of text%n", messages.sum(), messages.sum() / elapsed, formatBytes(chars.sum()));
+        linesByKind.forEach((kind, n) -> System.out.printf("  %-5s %,12d lines  %,10.0f/s%n", kind, n.sum(), n.sum() / elapsed));
+        int n = Math.min(latencyCount.get(), latencies.length);
+        if (n > 0) {
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            System.out.printf("Delivery latency (drip, %,d samples): p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n", n,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[n - 1] / 1e6);
+        }
+        System.out.printf("Allocated: %s (%s per message, live threads only)%n", formatBytes(allocated),
+            formatBytes(messages.sum() == 0 ? 0 : allocated / messages.sum()));
+        System.out.printf("GC: %d collections, %d ms%n", gc[0] - gcBefore[0], gc[1] - gcBefore[1]);
+        System.out.printf("Threads: peak %d (JVM peak %d)%n", peakThreads, threads.getPeakThreadCount());
+        System.out.printf("Stop of %d jobs took %d ms%n", jobs.size(), stopMillis);
+
+        manager.cleanup();
+        host.shutdown();
+    }
+
+    /**
+     * 替身控制台：像服务器控制台一样把组件转换为纯文本，统计行数并从 drip 行中计算投递延迟。
+     */
+    private ConsoleCommandSender standInConsole() {
+        PlainTextComponentSerializer plain = PlainTextComponentSerializer.plainText();
+        return (ConsoleCommandSender) Proxy.newProxyInstance(StressHarness.class.getClassLoader(), new Class<?>[]{ConsoleCommandSender.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "sendMessage":
+                    case "sendRichMessage":
+                        for (Object arg : (args != null) ? args : new Object[0]) {
+                            if (arg instanceof String) received((String) arg);
+                            else if (arg instanceof String[]) Arrays.stream((String[]) arg).forEach(this::received);
+                            else if (arg instanceof ComponentLike) received(plain.serialize(((ComponentLike) arg).asComponent()));
+                            else continue;
+                            break;
+                        }
+                        return null;
+                    case "getName":
+                        return "CONSOLE";
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "StandInConsole";
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    private void received(String text) {
+        long now = epochNanos();
+        messages.increment();
+        chars.add(text.length());
+        // 输出行的格式为 "[id:kind] 内容"，legacy 模式下带有 § 颜色代码
+        int open = text.indexOf('[');
+        int colon = (open >= 0) ? text.indexOf(':', open) : -1;
+        int close = (colon >= 0) ? text.indexOf(']', colon) : -1;
+        if (close < 0) return;
+        LongAdder counter = linesByKind.get(text.substring(colon + 1, close));
+        if (counter == null) return;
+        counter.increment();
+        if (text.regionMatches(colon + 1, "drip", 0, 4)) {
+            String stamp = text.substring(close + 1).replaceAll("§.", "").trim();
+            try {
+                int slot = latencyCount.getAndIncrement();
+                if (slot < latencies.length) latencies[slot] = now - Long.parseLong(stamp);
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    private static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private static long[] gcStats() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f kB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return '\0';
+        return null;
+    }
+
+    /**
+     * 替身宿主：配置取自 config.yml，异步任务使用线程池，主线程任务与定时任务使用单独的调度线程。
+     * 线程保持存活直到结束，以便统计其分配量。
+     */
+    private static class StandInHost implements ProcessHost {
+        final File dataFolder;
+        final ConsoleCommandSender console;
+        final YamlConfiguration config;
+        private final I18n i18n;
+        private final Logger logger = Logger.getLogger("ConsolePlus-stress");
+        private final ExecutorService async;
+        private final ScheduledExecutorService timer;
+
+        StandInHost(File dataFolder, ConsoleCommandSender console) throws IOException {
+            this.dataFolder = dataFolder;
+            this.console = console;
+            this.config = loadResource("config.yml");
+            System.getProperties().stringPropertyNames().stream().filter(k -> k.startsWith("config.")).forEach(k ->
+                config.set(k.substring("config.".length()), parse(System.getProperty(k))));
+            this.i18n = new I18n(loadResource("languages/" + config.getString("language", "en_US") + ".yml"));
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread t = new Thread(r, "stress-async-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            this.async = Executors.newCachedThreadPool(factory);
+            this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stress-main");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        private static YamlConfiguration loadResource(String name) throws IOException {
+            try (InputStream in = StressHarness.class.getClassLoader().getResourceAsStream(name)) {
+                if (in == null) throw new IOException("Missing resource " + name);
+                return YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        }
+
+        private static Object parse(String value) {
+            if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) return Boolean.parseBoolean(value);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return value;
+            }
+        }
+
+        void shutdown() {
+            async.shutdownNow();
+            timer.shutdownNow();
+        }
+
+        @Override
+        public FileConfiguration getConfig() {
+            return config;
+        }
+
+        @Override
+        public Logger getLogger() {
+            return logger;
+        }
+
+        @Override
+        public File getDataFolder() {
+            return dataFolder;
+        }
+
+        @Override
+        public I18n getI18n() {
+            return i18n;
+        }
+
+        @Override
+        public ConsoleCommandSender getConsoleSender() {
+            return console;
+        }
+
+        @Override
+        public void runAsync(Runnable task) {
+            async.execute(task);
+        }
+
+        @Override
+        public void runLater(Runnable task, long delayTicks) {
+            timer.schedule(task, delayTicks * 50, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void dispatchCommand(String command) {
+            logger.info("dispatch: " + command);
+        }
+
+        @Override
+        public BukkitTask runTimerAsync(Runnable task, long delayTicks, long periodTicks) {
+            ScheduledFuture<?> future = timer.scheduleAtFixedRate(() -> async.execute(task), delayTicks * 50, periodTicks * 50, TimeUnit.MILLISECONDS);
+            return (BukkitTask) Proxy.newProxyInstance(StressHarness.class.getClassLoader(), new Class<?>[]{BukkitTask.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "cancel":
+                            future.cancel(false);
+                            return null;
+                        case "isCancelled":
+                            return future.isCancelled();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.linuxfirmware.consolePlus.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同一段文本可被多条规则匹配时，每条规则都必须报告命中；含反向引用的规则不能因组号偏移而失效。
+ */
+class OutputFilterTest {
+    @Test
+    void excludeOverlappingGrepStillHides() {
+        OutputFilter filter = OutputFilter.compile("ERROR.*", "ignore.?", null);
+        assertFalse(filter.test("ERROR foo ignore1", new LineMatcher.Spans()));
+        assertTrue(filter.test("ERROR foo", new LineMatcher.Spans()));
+    }
+
+    @Test
+    void overlappingRegexRulesAllReportTheirTags() {
+        LineMatcher matcher = LineMatcher.builder().add("^x+", 0).add("x+y", 1).build();
+        assertEquals(0b11, matcher.match("xxxy", null, 0));
+
+        LineMatcher.Spans spans = new LineMatcher.Spans();
+        assertEquals(0b11, matcher.match("xxxy", spans, 0b10));
+        spans.normalize();
+        assertEquals(1, spans.size());
+        assertEquals(0, spans.start(0));
+        assertEquals(4, spans.end(0));
+    }
+
+    @Test
+    void backreferencesKeepTheirGroupNumbers() {
+        LineMatcher matcher = LineMatcher.builder().add("(a)\\1", 0).add("(b)\\1", 1).build();
+        assertEquals(0b11, matcher.match("aa bb", null, 0));
+        assertEquals(0b10, matcher.match("ab bb", null, 0));
+    }
+
+    @Test
+    void triggersFireAlongsideOverlappingFilters() {
+        OutputFilter filter = OutputFilter.withTriggers(OutputFilter.compile("ERROR.*", "ignore.?", "Exception.*"),
+            Arrays.asList("Exception in thread \\S+", "ERROR (\\w+) \\1", "Done ("), 0b011);
+        LineMatcher.Spans spans = new LineMatcher.Spans();
+
+        long found = filter.match("ERROR foo foo Exception in thread main ignore1", spans);
+        assertFalse(filter.visible(found, spans));
+        assertEquals(0b011, OutputFilter.triggerBits(found));
+
+        found = filter.match("ERROR bar Exception in thread main Done (1s)", spans);
+        assertTrue(filter.visible(found, spans));
+        assertEquals(0b101, OutputFilter.triggerBits(found));
+        assertTrue(spans.size() > 0);
+    }
+
+    @Test
+    void clearKeepsTriggers() {
+        OutputFilter filter = OutputFilter.withTriggers(OutputFilter.compile(null, "noise", null), Arrays.asList("FATAL"), 0);
+        OutputFilter cleared = OutputFilter.clear(filter);
+        long found = cleared.match("some noise FATAL", null);
+        assertEquals(0b1, OutputFilter.triggerBits(found));
+    }
+}